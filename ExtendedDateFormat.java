@@ -18,20 +18,53 @@
  * 
  */
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
 import java.text.DateFormatSymbols;
+import java.text.DecimalFormatSymbols;
+import java.text.ParsePosition;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 
  * @author Felipe Augusto Araujo Dias (@faadias1)
  * @version 1.0.0
- *
+ * 
  * ExtendedDateFormat is a Gregorian calendar-based date formatting 
  * tool. Its behaviour is the same of java.text.SimpleDateFormat 
  * (JDK7), except for the new parameters 'o' and 'O', which map 
@@ -39,6 +72,15 @@ import java.util.TimeZone;
  * thus, a pattern such as "'Today is' MMM do, yyyy" will result in 
  * "Today is Dec 5th, 2014".
  * 
+ * Once constructed, an instance is immutable as far as format() and 
+ * formatTo() are concerned: every call works on its own copy of the 
+ * calendar state, so a single (e.g. static final) instance per pattern 
+ * can be shared by any number of threads without locking.
+ * 
+ * Every formatter starts on its printer chain; one that renders often 
+ * enough is switched to a generated class by a background thread, 
+ * much like a JIT's tiers (see PROMOTION_THRESHOLD).
+ * 
  */
 public class ExtendedDateFormat {
 	
@@ -47,253 +89,4352 @@ public class ExtendedDateFormat {
 	protected String pattern = null;
 	protected Locale locale = null;
 	protected List<FormatToken> tokens = null;
-	protected GregorianCalendar cal = null;
-	protected DateFormatSymbols dfs = null;
+	protected SymbolTable symbols = null;
+	protected volatile CompiledPattern compiled = null;
+	private GregorianCalendar prototype = null;
+	private TimeZone zone = null;
+	private boolean arithmetic = false;
+	private int firstDayOfWeek = Calendar.SUNDAY;
+	private int minimalDaysInFirstWeek = 1;
+	protected char zeroDigit = '0';
+	private boolean secondCache = false;
+	private volatile SecondSnapshot secondSnapshot = null;
+	private ZoneRules zoneRules = null;
+	private volatile BoundarySnapshot boundarySnapshot = null;
+	private volatile ParsePlan parsePlan = null;
+	private int invocations = 0;
+	private boolean promotionQueued = false;
+	
+	protected static final int FIELD_ERA = 0;
+	protected static final int FIELD_YEAR = 1;
+	protected static final int FIELD_WEEK_YEAR = 2;
+	protected static final int FIELD_MONTH = 3;
+	protected static final int FIELD_WEEK_OF_YEAR = 4;
+	protected static final int FIELD_WEEK_OF_MONTH = 5;
+	protected static final int FIELD_DAY_OF_YEAR = 6;
+	protected static final int FIELD_DAY_OF_MONTH = 7;
+	protected static final int FIELD_DAY_OF_WEEK_IN_MONTH = 8;
+	protected static final int FIELD_DAY_OF_WEEK = 9;
+	protected static final int FIELD_ISO_DAY_OF_WEEK = 10;
+	protected static final int FIELD_AM_PM = 11;
+	protected static final int FIELD_HOUR = 12;
+	protected static final int FIELD_CLOCK_HOUR = 13;
+	protected static final int FIELD_HOUR_OF_DAY = 14;
+	protected static final int FIELD_CLOCK_HOUR_OF_DAY = 15;
+	protected static final int FIELD_MINUTE = 16;
+	protected static final int FIELD_SECOND = 17;
+	protected static final int FIELD_MILLISECOND = 18;
+	protected static final int FIELD_ZONE_OFFSET = 19;
+	protected static final int FIELD_DAYLIGHT = 20;
+	protected static final int FIELD_COUNT = 21;
+	
+	/*
+	 * Parsing fills an int[FIELD_COUNT + 1]: the field slots, plus a bit per 
+	 * field that was read at PARSED_FIELDS.
+	 */
+	protected static final int PARSED_FIELDS = FIELD_COUNT;
+	protected static final int PARSED_AMBIGUOUS_YEAR = 1 << 30;
+	protected static final int MAX_PARSED_DIGITS = 9;
+	
+	/**
+	 * Returned by parseToEpochMillis() for text that does not match; no 
+	 * instant the calendar path can produce maps to it.
+	 */
+	public static final long PARSE_ERROR = Long.MIN_VALUE;
+	
+	/*
+	 * Instants in [1600-01-01, 10000-01-01) UTC are decomposed with plain 
+	 * integer arithmetic. Earlier ones may hit the Julian-Gregorian cutover 
+	 * quirks of GregorianCalendar, so they (and far-future ones) still go 
+	 * through a calendar.
+	 */
+	protected static final long ARITHMETIC_MIN_MILLIS = -11676096000000L;
+	protected static final long ARITHMETIC_MAX_MILLIS = 253402300800000L;
+	protected static final long DEFAULT_GREGORIAN_CUTOVER = -12219292800000L;
+	
+	/*
+	 * Instants whose local year and week year have four digits in any zone, 
+	 * so that patterns with fixed-width fields print exactly the same 
+	 * number of chars for all of them.
+	 */
+	protected static final long FIXED_WIDTH_MIN_MILLIS = ARITHMETIC_MIN_MILLIS;
+	protected static final long FIXED_WIDTH_MAX_MILLIS = ARITHMETIC_MAX_MILLIS - 8 * 86400000L;
+	
+	/*
+	 * Digits of each field printed as a number: the most any instant needs 
+	 * (GregorianCalendar years run to 292278994), and the fewest and most 
+	 * needed within the fixed-width range.
+	 */
+	protected static final int[] MAX_FIELD_DIGITS = {1, 9, 9, 2, 2, 1, 3, 2, 1, 1, 1, 1, 2, 2, 2, 2, 2, 2, 3, 0, 0};
+	protected static final int[] FIXED_MIN_FIELD_DIGITS = {1, 4, 4, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 0, 0};
+	protected static final int[] FIXED_MAX_FIELD_DIGITS = {1, 4, 4, 2, 2, 1, 3, 2, 1, 1, 1, 1, 2, 2, 2, 2, 2, 2, 3, 0, 0};
+	
+	/*
+	 * Bits (1 << FIELD_*) of the fields that can be negative and then print 
+	 * a '-' before their digits: the week year of BC dates.
+	 */
+	protected static final int SIGNED_FIELDS = 1 << FIELD_WEEK_YEAR;
+	protected static final long MILLIS_PER_DAY = 86400000L;
+	protected static final int[] DAYS_BEFORE_MONTH = {0, 31, 59, 90, 120, 151, 181, 212, 243, 273, 304, 334};
+	
+	/*
+	 * Finest calendar unit a pattern depends on, used to decide how long a 
+	 * rendered value stays valid.
+	 */
+	protected static final int UNIT_MILLISECOND = 0;
+	protected static final int UNIT_SECOND = 1;
+	protected static final int UNIT_MINUTE = 2;
+	protected static final int UNIT_HOUR = 3;
+	protected static final int UNIT_DAY = 4;
+	protected static final int UNIT_MONTH = 5;
+	protected static final int UNIT_YEAR = 6;
+	
+	/*
+	 * Longest local length of each unit, and the odds (1 in n) with which 
+	 * a boundary snapshot is rebuilt for an instant that is not next to the 
+	 * cached one, so that a stream moving elsewhere gets cached again.
+	 */
+	protected static final long[] UNIT_SPANS = {1L, 1000L, 60000L, 3600000L, MILLIS_PER_DAY, 31 * MILLIS_PER_DAY, 366 * MILLIS_PER_DAY};
+	protected static final int BOUNDARY_RESEED_ODDS = 64;
+	
+	/*
+	 * getInstance() cache; the capacity can be tuned with the 
+	 * ExtendedDateFormat.cacheSize system property.
+	 */
+	protected static final int CACHE_CAPACITY = Math.max(16, Integer.getInteger("ExtendedDateFormat.cacheSize", 1024));
+	protected static final int CACHE_SEGMENTS = 16;
+	private static final FormatCache CACHE = new FormatCache(CACHE_CAPACITY, CACHE_SEGMENTS);
+	
+	/*
+	 * Number of rendering calls after which a formatter's printer chain is 
+	 * replaced, in the background, by a generated class (see promote()). 
+	 * Set the ExtendedDateFormat.promotionThreshold system property to 0 to 
+	 * keep every formatter on its printer chain.
+	 */
+	protected static final int PROMOTION_THRESHOLD = Integer.getInteger("ExtendedDateFormat.promotionThreshold", 10000);
+	
+	/*
+	 * Values per formatParallel() task: the epochs and the text of a chunk 
+	 * stay within a core's L2 cache.
+	 */
+	protected static final int PARALLEL_CHUNK = 2048;
+	
+	/*
+	 * "00" to "99", two chars per number, and the ordinal suffixes of every 
+	 * day of month and of year.
+	 */
+	protected static final char[] DIGIT_PAIRS = new char[200];
+	protected static final String[] ORDINAL_SUFFIXES = new String[367];
+	
+	static {
+		for (int i = 0; i < 100; i++) {
+			DIGIT_PAIRS[i << 1] = (char) ('0' + i / 10);
+			DIGIT_PAIRS[(i << 1) + 1] = (char) ('0' + i % 10);
+		}
+		for (int day = 0; day < ORDINAL_SUFFIXES.length; day++) {
+			ORDINAL_SUFFIXES[day] = computeOrdinalSuffix(day);
+		}
+	}
+	
+	protected static final int MAX_OFFSET_MINUTES = 18 * 60;
+	private static final ConcurrentMap<String, String[]> ZONE_NAMES = new ConcurrentHashMap<String, String[]>();
+	private static final ConcurrentMap<String, String[]> OFFSET_TEXTS = new ConcurrentHashMap<String, String[]>();
 	
 	protected enum FormatType {TEXT, FORMATTER, SEPARATOR}
 	
+	/**
+	 * A run of the pattern, recorded as the range [start, end) rather than 
+	 * as a copy of its text.
+	 */
 	protected class FormatToken {
-		String content = "";
-		FormatType type = null;
+		final FormatType type;
+		final int start;
+		final int end;
+		
+		FormatToken(FormatType type, int start, int end) {
+			this.type = type;
+			this.start = start;
+			this.end = end;
+		}
+		
+		int length() {
+			return end - start;
+		}
+		
+		/**
+		 * The raw pattern text of the token, quotes included.
+		 */
+		String content() {
+			return pattern.substring(start, end);
+		}
+		
+		/**
+		 * The text a TEXT or SEPARATOR token prints: quotes dropped, and 
+		 * each doubled quote printed as one.
+		 */
+		String literal() {
+			StringBuilder text = new StringBuilder(end - start);
+			for (int i = start; i < end; i++) {
+				char c = pattern.charAt(i);
+				if (c == SINGLE_QUOTE) {
+					if (i + 1 < end && pattern.charAt(i + 1) == SINGLE_QUOTE) {
+						i++;
+					}
+					else {
+						continue;
+					}
+				}
+				text.append(c);
+			}
+			return text.toString();
+		}
 		
 		@Override
 		public String toString() {
-			return "{content : \"" + content.replace("\"", "\\\"") + "\", " + "type : " + (type == null ? "null" : "\"" + type + "\"") + "}";
+			return "{content : \"" + content().replace("\"", "\\\"") + "\", " + "type : \"" + type + "\", start : " + start + ", end : " + end + "}";
 		}
 	}
 	
+	/**
+	 * Thrown for a malformed pattern; the offset is the index in the 
+	 * pattern of the offending quote or field.
+	 */
+	public static class InvalidPatternException extends IllegalArgumentException {
+		private static final long serialVersionUID = 1L;
+		private final int errorOffset;
+		
+		public InvalidPatternException(String message, int errorOffset) {
+			super(message + " at index " + errorOffset);
+			this.errorOffset = errorOffset;
+		}
+		
+		public int getErrorOffset() {
+			return errorOffset;
+		}
+	}
 	
-	public ExtendedDateFormat(String pattern, Locale locale) {
+	
+	public ExtendedDateFormat(String pattern, Locale locale, TimeZone zone) {
 		this.locale = locale == null ? Locale.getDefault() : locale;
-		this.cal = (GregorianCalendar) Calendar.getInstance();
-		this.dfs = DateFormatSymbols.getInstance(locale);
+		this.prototype = (GregorianCalendar) Calendar.getInstance(zone == null ? TimeZone.getDefault() : zone);
+		this.zone = prototype.getTimeZone();
+		this.firstDayOfWeek = prototype.getFirstDayOfWeek();
+		this.minimalDaysInFirstWeek = prototype.getMinimalDaysInFirstWeek();
+		this.arithmetic = prototype.getClass() == GregorianCalendar.class 
+				&& prototype.getGregorianChange().getTime() == DEFAULT_GREGORIAN_CUTOVER;
+		this.symbols = SymbolTable.forLocale(this.locale);
+		// numbers were always rendered by String.format, i.e. in the default format locale's digits
+		this.zeroDigit = DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT)).getZeroDigit();
+		this.zoneRules = zoneRules(this.zone);
 		
 		applyPattern(pattern);
 	}
 	
+	public ExtendedDateFormat(String pattern, Locale locale) {
+		this(pattern, locale, TimeZone.getDefault());
+	}
+	
 	public ExtendedDateFormat(String pattern) {
 		this(pattern, Locale.getDefault());
 	}
-
 	
+	/**
+	 * Copies an already compiled formatter; nothing is re-lexed and the 
+	 * read-only state (printers, calendar prototype, symbols) is shared.
+	 */
+	protected ExtendedDateFormat(ExtendedDateFormat source) {
+		this.pattern = source.pattern;
+		this.locale = source.locale;
+		this.tokens = source.tokens;
+		this.symbols = source.symbols;
+		this.compiled = source.compiled;
+		this.prototype = source.prototype;
+		this.zone = source.zone;
+		this.arithmetic = source.arithmetic;
+		this.firstDayOfWeek = source.firstDayOfWeek;
+		this.minimalDaysInFirstWeek = source.minimalDaysInFirstWeek;
+		this.zeroDigit = source.zeroDigit;
+		this.zoneRules = source.zoneRules;
+		this.parsePlan = source.parsePlan;
+	}
+	
+	/**
+	 * Returns a copy of this formatter that remembers the text rendered for 
+	 * the last second it saw. Calls landing in that same second only render 
+	 * the millisecond ('S') fields, which suits monotonically advancing 
+	 * timestamps such as log records. The remembered second is an immutable 
+	 * snapshot behind a volatile reference, so the copy stays thread-safe.
+	 */
+	public ExtendedDateFormat withSecondCache() {
+		ExtendedDateFormat copy = new ExtendedDateFormat(this);
+		copy.secondCache = true;
+		return copy;
+	}
+	
+	/**
+	 * Returns a copy of this formatter whose printer chain has been turned 
+	 * into a dedicated hidden class (see PrinterGenerator): straight-line 
+	 * code for this exact token sequence, with literals, field indexes and 
+	 * widths as constants, so the JIT can inline the whole formatter. If 
+	 * the class cannot be defined, the copy keeps the printer chain.
+	 */
+	public ExtendedDateFormat withGeneratedCode() {
+		ExtendedDateFormat copy = new ExtendedDateFormat(this);
+		copy.compiled = PrinterGenerator.generate(compiled);
+		return copy;
+	}
+	
+	public TimeZone getTimeZone() {
+		return (TimeZone) zone.clone();
+	}
+	
+	/**
+	 * Counts a call that actually renders the pattern. Once the threshold 
+	 * is reached the counter is no longer written, so hot formatters shared 
+	 * between threads do not keep bouncing it between caches. Lost updates 
+	 * from racing threads only delay the promotion.
+	 */
+	protected void countInvocation() {
+		if (invocations < PROMOTION_THRESHOLD && ++invocations >= PROMOTION_THRESHOLD) {
+			promote();
+		}
+	}
+	
+	/**
+	 * Queues this formatter, once, for the promoter thread, which builds the 
+	 * generated class off the caller's thread and publishes it through the 
+	 * volatile compiled field. Calls in flight keep the CompiledPattern they 
+	 * have read, so the swap needs no locking on the format path. Until 
+	 * then, and for formatters that never get hot, only the printer chain 
+	 * is kept in memory.
+	 */
+	private synchronized void promote() {
+		if (promotionQueued || compiled.generated != null) {
+			return;
+		}
+		promotionQueued = true;
+		Promoter.EXECUTOR.execute(new Runnable() {
+			@Override
+			public void run() {
+				compiled = PrinterGenerator.generate(compiled);
+			}
+		});
+	}
+	
+	/**
+	 * Returns a shared formatter for the pattern, taken from a bounded LRU 
+	 * cache; the pattern is only lexed and compiled on a cache miss. Since 
+	 * instances are thread-safe, the result may be used by any thread.
+	 */
+	public static ExtendedDateFormat getInstance(String pattern, Locale locale, TimeZone zone) {
+		return CACHE.get(pattern, locale == null ? Locale.getDefault() : locale, zone == null ? TimeZone.getDefault() : zone);
+	}
+	
+	public static ExtendedDateFormat getInstance(String pattern, Locale locale) {
+		return getInstance(pattern, locale, TimeZone.getDefault());
+	}
+	
+	public static ExtendedDateFormat getInstance(String pattern) {
+		return getInstance(pattern, Locale.getDefault(), TimeZone.getDefault());
+	}
+	
+	public static CacheStatistics getCacheStatistics() {
+		return CACHE.statistics();
+	}
+	
+	public static void clearCache() {
+		CACHE.clear();
+	}
+	
+	/**
+	 * Renders the compiled printer chain; the pattern is neither re-lexed
+	 * nor re-validated here.
+	 */
 	public final String format(Date date) {
-		StringBuffer buffer = new StringBuffer();
-		cal.setTime(date);
+		return format(date.getTime());
+	}
+	
+	/**
+	 * Formats an epoch-millis instant without going through Date or, for 
+	 * any instant from 1600 to 9999, Calendar.
+	 */
+	public final String format(long epochMillis) {
+		CompiledPattern compiled = this.compiled;
 		
-		for (FormatToken token : tokens) {
-			if (token.content.length() > 0 && token.type != null) {
-				buffer.append(getFormattedField(token));
+		if (compiled.unit >= UNIT_MINUTE) {
+			BoundarySnapshot snapshot = boundarySnapshot(epochMillis, compiled);
+			if (snapshot != null) {
+				return snapshot.text;
+			}
+		}
+		else if (secondCache) {
+			SecondSnapshot snapshot = secondSnapshot(epochMillis, compiled);
+			if (snapshot != null) {
+				char[] buffer = new char[snapshot.maxLength()];
+				return new String(buffer, 0, snapshot.writeTo(buffer, 0, (int) Math.floorMod(epochMillis, 1000L)));
 			}
 		}
 		
+		if (compiled.fixedLength >= 0 && isFixedWidth(epochMillis)) {
+			countInvocation();
+			char[] buffer = new char[compiled.fixedLength];
+			compiled.printFixed(loadFields(epochMillis, compiled), buffer, 0);
+			return new String(buffer);
+		}
+		
+		StringBuilder buffer = new StringBuilder();
+		formatTo(epochMillis, buffer);
 		return buffer.toString();
 	}
 	
-	protected String getFormattedField(FormatToken token) {
-		if (token.type == FormatType.SEPARATOR) {
-			return token.content;
+	public final int formatTo(Date date, StringBuilder buffer) {
+		return formatTo(date.getTime(), buffer);
+	}
+	
+	/**
+	 * Appends the formatted instant to the caller's builder without any
+	 * intermediate String.
+	 * 
+	 * @return the new length of the builder
+	 */
+	public final int formatTo(long epochMillis, StringBuilder buffer) {
+		CompiledPattern compiled = this.compiled;
+		
+		if (compiled.unit >= UNIT_MINUTE) {
+			BoundarySnapshot snapshot = boundarySnapshot(epochMillis, compiled);
+			if (snapshot != null) {
+				return buffer.append(snapshot.text).length();
+			}
+		}
+		else if (secondCache) {
+			SecondSnapshot snapshot = secondSnapshot(epochMillis, compiled);
+			if (snapshot != null) {
+				return snapshot.appendTo(buffer, (int) Math.floorMod(epochMillis, 1000L));
+			}
 		}
 		
-		if (token.type == FormatType.TEXT) {
-			return token.content.replaceAll("^'|'$", "");
+		countInvocation();
+		int[] fields = loadFields(epochMillis, compiled);
+		compiled.print(fields, buffer);
+		return buffer.length();
+	}
+	
+	public final int formatTo(Date date, char[] buffer, int offset) {
+		return formatTo(date.getTime(), buffer, offset);
+	}
+	
+	/**
+	 * Writes the formatted instant into the array starting at offset. The
+	 * array must be large enough; nothing is written past its end, an
+	 * ArrayIndexOutOfBoundsException is thrown instead.
+	 * 
+	 * @return the offset right after the last character written
+	 */
+	public final int formatTo(long epochMillis, char[] buffer, int offset) {
+		CompiledPattern compiled = this.compiled;
+		
+		if (compiled.unit >= UNIT_MINUTE) {
+			BoundarySnapshot snapshot = boundarySnapshot(epochMillis, compiled);
+			if (snapshot != null) {
+				return writeText(buffer, offset, snapshot.text);
+			}
+		}
+		else if (secondCache) {
+			SecondSnapshot snapshot = secondSnapshot(epochMillis, compiled);
+			if (snapshot != null) {
+				return snapshot.writeTo(buffer, offset, (int) Math.floorMod(epochMillis, 1000L));
+			}
 		}
 		
-		//token.type == FormatType.FORMATTER
-		char c = token.content.charAt(0);
-		int length = token.content.length();
-		String format = "%0" + length + "d";
+		countInvocation();
+		int[] fields = loadFields(epochMillis, compiled);
 		
-		switch (c) {
-			case 'G':
-				return dfs.getEras()[cal.get(Calendar.ERA)];
-			case 'y':
-				if (length == 2) return String.format(format, cal.get(Calendar.YEAR) % 100);
-				return String.format(format, cal.get(Calendar.YEAR));
-			case 'Y':
-				if (length == 2) return String.format(format, cal.getWeekYear() % 100);
-				return String.format(format, cal.getWeekYear());
-			case 'M':
-				if (length < 3) return String.format(format, cal.get(Calendar.MONTH)+1);
-				if (length > 3) return dfs.getMonths()[cal.get(Calendar.MONTH)];
-				return dfs.getShortMonths()[cal.get(Calendar.MONTH)];
-			case 'w':
-				return String.format(format, cal.get(Calendar.WEEK_OF_YEAR));
-			case 'W':
-				return String.format(format, cal.get(Calendar.WEEK_OF_MONTH));
-			case 'D':
-				return String.format(format, cal.get(Calendar.DAY_OF_YEAR));
-			case 'd':
-				return String.format(format, cal.get(Calendar.DAY_OF_MONTH));
-			case 'F':
-				return String.format(format, cal.get(Calendar.DAY_OF_WEEK_IN_MONTH));
-			case 'E':
-				if (length > 3) return dfs.getWeekdays()[cal.get(Calendar.DAY_OF_WEEK)];
-				return dfs.getShortWeekdays()[cal.get(Calendar.DAY_OF_WEEK)];
-			case 'u':
-				return String.format(format, cal.get(Calendar.DAY_OF_WEEK) == 1 ? 7 : cal.get(Calendar.DAY_OF_WEEK)-1);
-			case 'a':
-				return dfs.getAmPmStrings()[cal.get(Calendar.AM_PM)];
-			case 'h':
-				return String.format(format, cal.get(Calendar.HOUR) == 0 ? 12 : cal.get(Calendar.HOUR));
-			case 'H':
-				return String.format(format, cal.get(Calendar.HOUR_OF_DAY));
-			case 'k':
-				return String.format(format, cal.get(Calendar.HOUR_OF_DAY) == 0 ? 24 : cal.get(Calendar.HOUR_OF_DAY));
-			case 'K':
-				return String.format(format, cal.get(Calendar.HOUR));
-			case 'm':
-				return String.format(format, cal.get(Calendar.MINUTE));
-			case 's':
-				return String.format(format, cal.get(Calendar.SECOND));
-			case 'S':
-				return String.format(format, cal.get(Calendar.MILLISECOND));
-			case 'z':
-				TimeZone tz = cal.getTimeZone();
-				boolean isDST = cal.get(Calendar.DST_OFFSET) != 0;
-				return tz.getDisplayName(isDST, length < 4 ? TimeZone.SHORT : TimeZone.LONG, locale);
-			case 'Z':
-				return getRFC822TimeZone();
-			case 'X':
-				return getISO8601TimeZone(length);
-			case 'o':
-				return getDayOrdinal(cal.get(Calendar.DAY_OF_MONTH));
-			case 'O':
-				return getDayOrdinal(cal.get(Calendar.DAY_OF_YEAR));
-			default:
-				throw new IllegalArgumentException ("Illegal pattern character " + c);
+		if (compiled.fixedLength >= 0 && isFixedWidth(epochMillis)) {
+			int end = offset + compiled.fixedLength;
+			if (offset < 0 || end > buffer.length) {
+				throw new ArrayIndexOutOfBoundsException(end - 1);
+			}
+			compiled.printFixed(fields, buffer, offset);
+			return end;
 		}
+		return compiled.print(fields, buffer, offset);
 	}
 	
-	protected final String getRFC822TimeZone() {
-		int pureMinutes = (cal.get(Calendar.ZONE_OFFSET) + cal.get(Calendar.DST_OFFSET)) / 60000;
-		char sign = pureMinutes < 0 ? '-' : '+';
-		pureMinutes = Math.abs(pureMinutes);
+	public final int formatTo(Date date, byte[] buffer, int offset) {
+		return formatTo(date.getTime(), buffer, offset);
+	}
+	
+	/**
+	 * Writes the formatted instant as UTF-8 into the array starting at 
+	 * offset, with no String or encoder in between: numbers and literals 
+	 * are written as bytes, names come pre-encoded from the symbol table. 
+	 * As with the char[] flavour, an ArrayIndexOutOfBoundsException is 
+	 * thrown if the text does not fit; see maxFormattedLength().
+	 * 
+	 * @return the offset right after the last byte written
+	 */
+	public final int formatTo(long epochMillis, byte[] buffer, int offset) {
+		CompiledPattern compiled = this.compiled;
 		
-		int hours = pureMinutes / 60;
-		int minutes = pureMinutes % 60;
+		if (compiled.unit >= UNIT_MINUTE) {
+			BoundarySnapshot snapshot = boundarySnapshot(epochMillis, compiled);
+			if (snapshot != null) {
+				return writeUtf8(buffer, offset, snapshot.text);
+			}
+		}
+		else if (secondCache) {
+			SecondSnapshot snapshot = secondSnapshot(epochMillis, compiled);
+			if (snapshot != null) {
+				return snapshot.writeTo(buffer, offset, (int) Math.floorMod(epochMillis, 1000L));
+			}
+		}
 		
-		return sign + String.format("%04d", hours * 100 + minutes);
+		countInvocation();
+		int[] fields = loadFields(epochMillis, compiled);
+		return compiled.print(fields, buffer, offset);
 	}
 	
-	protected final String getISO8601TimeZone(int length) {
-		int pureMinutes = (cal.get(Calendar.ZONE_OFFSET) + cal.get(Calendar.DST_OFFSET)) / 60000;
-		char sign = pureMinutes < 0 ? '-' : '+';
-		pureMinutes = Math.abs(pureMinutes);
+	public final int formatTo(Date date, ByteBuffer buffer) {
+		return formatTo(date.getTime(), buffer);
+	}
+	
+	/**
+	 * Writes the formatted instant as UTF-8 at the buffer's position and 
+	 * moves the position past it, ready for a FileChannel or SocketChannel 
+	 * write. A heap buffer with room for maxFormattedLength() chars is 
+	 * written through its array; any other buffer, direct ones included, 
+	 * is encoded into with absolute puts, with no intermediate array.
+	 * 
+	 * @return the number of bytes written
+	 * @throws BufferOverflowException if the text does not fit in the 
+	 * remaining bytes, in which case the position is left unchanged (the 
+	 * bytes from it to the limit may have been overwritten)
+	 */
+	public final int formatTo(long epochMillis, ByteBuffer buffer) {
+		int position = buffer.position();
 		
-		int hours = pureMinutes / 60;
-		int minutes = pureMinutes % 60;
+		if (buffer.hasArray() && buffer.remaining() >= 3 * compiled.maxLength) {
+			int start = buffer.arrayOffset() + position;
+			int length = formatTo(epochMillis, buffer.array(), start) - start;
+			buffer.position(position + length);
+			return length;
+		}
 		
-		switch(length) {
-		case 1:
-			return sign + String.format("%02d", hours);
-		case 2:
-			return sign + String.format("%02d", hours) + String.format("%02d", minutes);
-		case 3:
-			return sign + String.format("%02d", hours) + ":" + String.format("%02d", minutes);
-		default:
-			throw new IllegalArgumentException ("Invalid ISO 8601 format: length=" + length);
+		int end;
+		try {
+			end = formatTo(epochMillis, buffer, position);
 		}
-	}
-	
-	protected final String getDayOrdinal(int day) {
-		switch(day % 10) {
-		case 1:
-			return ((day/10) % 10) != 1 ? "st" : "th";
-		case 2:
-			return ((day/10) % 10) != 1 ? "nd" : "th";
-		case 3:
-			return ((day/10) % 10) != 1 ? "rd" : "th";
-		default:
-			return "th";
+		catch (IndexOutOfBoundsException e) {
+			throw new BufferOverflowException();
 		}
+		buffer.position(end);
+		return end - position;
 	}
 	
-	protected void applyPattern(String pattern) {
-		if (pattern == null) {
-			throw new NullPointerException("Pattern cannot be null");
+	/**
+	 * Writes the formatted instant as UTF-8 at index with absolute puts, 
+	 * leaving the buffer's position alone. An IndexOutOfBoundsException is 
+	 * thrown when the text runs past the limit.
+	 * 
+	 * @return the index right after the last byte written
+	 */
+	protected int formatTo(long epochMillis, ByteBuffer buffer, int index) {
+		CompiledPattern compiled = this.compiled;
+		
+		if (compiled.unit >= UNIT_MINUTE) {
+			BoundarySnapshot snapshot = boundarySnapshot(epochMillis, compiled);
+			if (snapshot != null) {
+				return writeUtf8(buffer, index, snapshot.text);
+			}
+		}
+		else if (secondCache) {
+			SecondSnapshot snapshot = secondSnapshot(epochMillis, compiled);
+			if (snapshot != null) {
+				return snapshot.writeTo(buffer, index, (int) Math.floorMod(epochMillis, 1000L));
+			}
 		}
 		
-		int numberOfSingleQuotes = pattern.length() - pattern.replace("'", "").length();
+		countInvocation();
+		int[] fields = loadFields(epochMillis, compiled);
+		return compiled.print(fields, buffer, index);
+	}
+	
+	/**
+	 * Formats a column of instants into a column of UTF-8 text, e.g. an 
+	 * off-heap event batch viewed through direct buffers: epochs is read 
+	 * from its position, text and offsets are written at theirs, and all 
+	 * three positions are moved past what was done. For each value, offsets 
+	 * receives where its text ends, relative to where text started; value i 
+	 * spans [offsets[i - 1], offsets[i]), the first starting at 0, so 
+	 * putting a 0 ahead gives the usual n + 1 columnar offsets. Formatting 
+	 * stops early, with no position moved past a partial value, when text 
+	 * or offsets runs out of room, so the caller can flush them and call 
+	 * again.
+	 * 
+	 * @return the number of values formatted
+	 */
+	public final int formatColumn(LongBuffer epochs, ByteBuffer text, IntBuffer offsets) {
+		int maxBytes = 3 * compiled.maxLength;
+		int start = text.position();
+		int count = 0;
 		
-		if (numberOfSingleQuotes % 2 != 0) {
-			throw new IllegalArgumentException("Unterminated quote");
+		while (epochs.hasRemaining() && offsets.hasRemaining()) {
+			long epochMillis = epochs.get(epochs.position());
+			int position = text.position();
+			
+			if (text.hasArray() && text.remaining() >= maxBytes) {
+				int offset = text.arrayOffset() + position;
+				text.position(position + formatTo(epochMillis, text.array(), offset) - offset);
+			}
+			else {
+				try {
+					text.position(formatTo(epochMillis, text, position));
+				}
+				catch (IndexOutOfBoundsException e) {
+					break;
+				}
+			}
+			
+			epochs.position(epochs.position() + 1);
+			offsets.put(text.position() - start);
+			count++;
 		}
 		
-		this.pattern = pattern;
-		lexAnalyzer();
+		return count;
 	}
 	
-	protected void lexAnalyzer() {
-		this.tokens = new ArrayList<FormatToken>();
+	/**
+	 * Formats epochs[from, to) into one Batch: a single char[] holding all 
+	 * the texts back to back, plus their offsets, instead of a Date and a 
+	 * String per value. State is kept between consecutive values, so sorted 
+	 * input is cheap: a value in the same second as the next one gets that 
+	 * second's text rendered once with only its milliseconds printed, and 
+	 * values in the same local day only recompute the time of day, the 
+	 * date fields and zone offset being carried over. Patterns whose text 
+	 * changes by the minute or slower reuse the whole text of that unit. 
+	 * Unsorted input is formatted correctly, just with fewer hits.
+	 */
+	public final Batch formatBatch(long[] epochs, int from, int to) {
+		checkRange(epochs, from, to);
+		int[] offsets = new int[to - from + 1];
+		char[] text = formatBatch(epochs, from, to, offsets, 0);
+		int length = offsets[to - from];
+		return new Batch(length == text.length ? text : Arrays.copyOf(text, length), offsets);
+	}
+	
+	/**
+	 * formatBatch() into a fresh, possibly oversized array, with the end 
+	 * of each value's text stored in offsets from offsetsFrom + 1 on.
+	 */
+	protected char[] formatBatch(long[] epochs, int from, int to, int[] offsets, int offsetsFrom) {
+		CompiledPattern compiled = this.compiled;
+		int maxLength = compiled.maxLength;
+		int estimate = compiled.fixedLength >= 0 ? compiled.fixedLength : maxLength;
+		char[] text = new char[(int) Math.min((long) (to - from) * estimate + maxLength, Integer.MAX_VALUE - 8)];
+		int pos = 0;
 		
-		boolean quoteOpened = false;
-		Character lastFormatterChar = null;
-		FormatToken token = new FormatToken();
+		BoundarySnapshot unit = null;
+		BoundarySnapshot day = null;
+		SecondSnapshot second = null;
+		int[] fields = null;
 		
-		for (int i = 0; i < pattern.length(); i++) {
-			char c = pattern.charAt(i);
+		for (int i = from; i < to; i++) {
+			long epochMillis = epochs[i];
 			
-			if (c == SINGLE_QUOTE) {
-				if (i+1 < pattern.length() && pattern.charAt(i+1) == SINGLE_QUOTE) {
-					
-					if (token.type == FormatType.FORMATTER) {
-						tokens.add(token);
-						token = new FormatToken();
-						token.type = FormatType.SEPARATOR;
-					}
-					
-					i++;
+			if (second != null && Math.floorDiv(epochMillis, 1000L) == second.epochSecond) {
+				text = ensureRoom(text, pos, second.maxLength());
+				pos = second.writeTo(text, pos, (int) Math.floorMod(epochMillis, 1000L));
+			}
+			else if (unit != null && epochMillis >= unit.validFrom && epochMillis < unit.validUntil) {
+				text = ensureRoom(text, pos, unit.text.length());
+				pos = writeText(text, pos, unit.text);
+			}
+			else {
+				countInvocation();
+				if (day != null && epochMillis >= day.validFrom && epochMillis < day.validUntil) {
+					computeTimeFields((int) Math.floorMod(epochMillis + fields[FIELD_ZONE_OFFSET], MILLIS_PER_DAY), fields);
 				}
 				else {
-					quoteOpened = !quoteOpened;
-					if (quoteOpened) {
-						tokens.add(token);
-						token = new FormatToken();
-						token.type = FormatType.TEXT;
-					}
+					// the day's bounds cost a transition lookup, only worth it if the next value may share it
+					fields = loadFields(epochMillis, compiled);
+					day = i + 1 < to && Math.abs(epochs[i + 1] - epochMillis) < MILLIS_PER_DAY ? daySnapshot(epochMillis, fields, compiled) : null;
 				}
 				
-				token.content += c;
-			}
-			else {
-				if (quoteOpened) {
-					token.content += c;
+				int start = pos;
+				text = ensureRoom(text, pos, maxLength);
+				if (compiled.fixedLength >= 0 && isFixedWidth(epochMillis)) {
+					compiled.printFixed(fields, text, pos);
+					pos += compiled.fixedLength;
 				}
 				else {
-					if ( (c >= 65 && c <= 90) || (c >= 97 && c <= 122)) { //c in range [A-Z] U [a-z]
-						if (token.type == null) {
-							token.type = FormatType.FORMATTER;
-						}
-						
-						if (token.type != FormatType.FORMATTER || ( !"".equals(token.content) && c != lastFormatterChar )) {
-							tokens.add(token);
-							token = new FormatToken();
-							token.type = FormatType.FORMATTER;
-						}
-
-						token.content += c;
-						lastFormatterChar = c;
+					try {
+						pos = compiled.print(fields, text, pos);
 					}
-					else {
-						if (token.type == null) {
-							token.type = FormatType.SEPARATOR;
-						}
-						
-						if (token.type != FormatType.SEPARATOR) {
-							tokens.add(token);
-							token = new FormatToken();
-							token.type = FormatType.SEPARATOR;
-						}
-						
-						token.content += c;
-						lastFormatterChar = null;
+					catch (ArrayIndexOutOfBoundsException e) {
+						// longer than maxLength after all: print it apart and make room for all of it
+						StringBuilder value = new StringBuilder();
+						compiled.print(fields, value);
+						text = ensureRoom(text, pos, value.length());
+						value.getChars(0, value.length(), text, pos);
+						pos += value.length();
 					}
 				}
+				
+				long epochSecond = Math.floorDiv(epochMillis, 1000L);
+				if (compiled.unit >= UNIT_MINUTE) {
+					unit = day == null ? null : boundarySnapshot(epochMillis, fields, compiled, compiled.unit, new String(text, start, pos - start));
+				}
+				else if (i + 1 < to && Math.floorDiv(epochs[i + 1], 1000L) == epochSecond) {
+					second = secondSnapshot(epochSecond, fields, compiled);
+				}
+			}
+			
+			offsets[offsetsFrom + i - from + 1] = pos;
+		}
+		
+		return text;
+	}
+	
+	/**
+	 * text itself if it has room for length more chars at pos, or else a 
+	 * copy of it at least twice as large.
+	 */
+	protected static char[] ensureRoom(char[] text, int pos, int length) {
+		if (text.length - pos >= length) {
+			return text;
+		}
+		return Arrays.copyOf(text, (int) Math.min(Math.max(2L * text.length, (long) pos + length), Integer.MAX_VALUE - 8));
+	}
+	
+	public final Batch formatParallel(long[] epochs, ForkJoinPool pool) {
+		return formatParallel(epochs, 0, epochs.length, pool);
+	}
+	
+	/**
+	 * formatBatch() spread over the pool: each task formats a chunk of 
+	 * PARALLEL_CHUNK values into its own array, then each chunk's text is 
+	 * copied once into the result and its offsets, written in place from 
+	 * the start, are shifted by the length of the chunks before it. All 
+	 * per-call state is local to the task (see loadFields()), so the tasks 
+	 * share nothing but this formatter's immutable compiled pattern.
+	 */
+	public final Batch formatParallel(long[] epochs, int from, int to, ForkJoinPool pool) {
+		checkRange(epochs, from, to);
+		int chunks = (to - from + PARALLEL_CHUNK - 1) / PARALLEL_CHUNK;
+		if (chunks <= 1) {
+			return formatBatch(epochs, from, to);
+		}
+		
+		int[] offsets = new int[to - from + 1];
+		char[][] texts = new char[chunks][];
+		pool.invoke(new BatchTask(epochs, from, to, offsets, texts, null, null, 0, chunks));
+		
+		int[] bases = new int[chunks];
+		long length = 0;
+		for (int chunk = 0; chunk < chunks; chunk++) {
+			bases[chunk] = (int) length;
+			length += offsets[Math.min((chunk + 1) * PARALLEL_CHUNK, to - from)];
+		}
+		if (length > Integer.MAX_VALUE - 8) {
+			throw new OutOfMemoryError("Formatted text too long: " + length);
+		}
+		
+		char[] text = new char[(int) length];
+		pool.invoke(new BatchTask(epochs, from, to, offsets, texts, bases, text, 0, chunks));
+		return new Batch(text, offsets);
+	}
+	
+	protected static void checkRange(long[] epochs, int from, int to) {
+		if (from < 0 || from > to || to > epochs.length) {
+			throw new ArrayIndexOutOfBoundsException("from: " + from + ", to: " + to + ", length: " + epochs.length);
+		}
+	}
+	
+	public final int formatTo(Date date, Appendable appendable) throws IOException {
+		return formatTo(date.getTime(), appendable);
+	}
+	
+	/**
+	 * Appends the formatted instant. A StringBuilder is written directly;
+	 * any other Appendable receives the text in a single append call.
+	 * 
+	 * @return the number of characters appended
+	 */
+	public final int formatTo(long epochMillis, Appendable appendable) throws IOException {
+		if (appendable instanceof StringBuilder) {
+			StringBuilder buffer = (StringBuilder) appendable;
+			int length = buffer.length();
+			return formatTo(epochMillis, buffer) - length;
+		}
+		
+		StringBuilder buffer = new StringBuilder();
+		formatTo(epochMillis, buffer);
+		appendable.append(buffer);
+		return buffer.length();
+	}
+	
+	/**
+	 * The most chars format() can return for any instant, so that callers 
+	 * can size formatTo() buffers once, variable-width patterns included. 
+	 * In UTF-8 each char takes at most three bytes.
+	 */
+	public int maxFormattedLength() {
+		return compiled.maxLength;
+	}
+	
+	/**
+	 * Whether the instant is printed with the pattern's fixed widths, if it 
+	 * has them: arithmetic decomposition, four-digit years.
+	 */
+	protected boolean isFixedWidth(long epochMillis) {
+		return arithmetic && epochMillis >= FIXED_WIDTH_MIN_MILLIS && epochMillis < FIXED_WIDTH_MAX_MILLIS;
+	}
+	
+	/**
+	 * Parses text produced by this pattern, starting at position's index, 
+	 * with the token semantics of format(): numbers take as many 
+	 * digits as they find, or exactly the pattern width when followed by 
+	 * another number; names (case-insensitively, long or short form) go 
+	 * through per-locale tries; 'o'/'O' suffixes must agree with the day 
+	 * they follow. Unparsed fields default as in SimpleDateFormat.
+	 * 
+	 * @return the instant, with position's index moved past the parsed 
+	 * text; or null, with position's error index set and its index 
+	 * unchanged. No exception is thrown for malformed text.
+	 */
+	public Date parse(CharSequence text, ParsePosition position) {
+		ParsePlan plan = parsePlan();
+		FieldParser[] parsers = plan.parsers;
+		int[] fields = new int[FIELD_COUNT + 1];
+		int pos = parseFields(plan, text, position.getIndex(), text.length(), fields);
+		
+		if (pos < 0) {
+			position.setErrorIndex(~pos);
+			return null;
+		}
+		
+		position.setIndex(pos);
+		return new Date(resolveFields(parsers, fields));
+	}
+	
+	/**
+	 * Parses text[start, end), which must hold exactly one value of this 
+	 * pattern, straight to epoch millis. Dates and times are combined with 
+	 * plain arithmetic and the zone offset is resolved the way the calendar 
+	 * does, so nothing but the field array is allocated; only patterns 
+	 * whose fields the arithmetic does not cover (week dates, zone names, 
+	 * conflicting fields, BC years) go through resolveFields().
+	 * 
+	 * @return the instant, or PARSE_ERROR if the text does not match
+	 */
+	public long parseToEpochMillis(CharSequence text, int start, int end) {
+		ParsePlan plan = parsePlan();
+		int[] fields = new int[FIELD_COUNT + 1];
+		
+		if (parseFields(plan, text, start, end, fields) != end) {
+			return PARSE_ERROR;
+		}
+		return resolveEpochMillis(plan, fields);
+	}
+	
+	/**
+	 * parseToEpochMillis() for text[start, end) as ASCII or UTF-8 bytes, 
+	 * e.g. a column of a CSV file read without decoding it. Text fitting 
+	 * the pattern's FixedLayout is read straight from the bytes, eight at 
+	 * a time; anything else is decoded and goes through the parser chain.
+	 */
+	public long parseToEpochMillis(byte[] text, int start, int end) {
+		ParsePlan plan = parsePlan();
+		FixedLayout layout = plan.layout;
+		
+		if (layout != null && end - start == layout.length) {
+			int[] fields = new int[FIELD_COUNT + 1];
+			if (layout.parse(text, start, fields)) {
+				return resolveEpochMillis(plan, fields);
+			}
+		}
+		String decoded = new String(text, start, end - start, StandardCharsets.UTF_8);
+		return parseToEpochMillis(decoded, 0, decoded.length());
+	}
+	
+	/**
+	 * Arithmetic resolution when the plan allows it, the calendar otherwise.
+	 */
+	protected long resolveEpochMillis(ParsePlan plan, int[] fields) {
+		if (plan.arithmetic) {
+			long epochMillis = computeEpochMillis(fields, plan);
+			if (epochMillis != PARSE_ERROR) {
+				return epochMillis;
 			}
 		}
+		return resolveFields(plan.parsers, fields);
+	}
+	
+	/**
+	 * Inverse of computeFields() for the fields a plan with arithmetic set 
+	 * may contain, lenient like the calendar (month 13 is January of the 
+	 * next year, and so on). Returns PARSE_ERROR when the result needs the 
+	 * calendar after all: BC eras and years far from the arithmetic range.
+	 */
+	protected long computeEpochMillis(int[] fields, ParsePlan plan) {
+		long local = computeLocalMillis(fields);
+		if (local == PARSE_ERROR) {
+			return PARSE_ERROR;
+		}
+		
+		int parsed = fields[PARSED_FIELDS];
+		long epochMillis = (parsed & (1 << FIELD_ZONE_OFFSET)) != 0 ? local - fields[FIELD_ZONE_OFFSET] : localToEpochMillis(local, plan.wallTimeZone);
+		
+		if (epochMillis < plan.centuryStartMillis && (parsed & PARSED_AMBIGUOUS_YEAR) != 0) {
+			fields[FIELD_YEAR] += 100;
+			fields[PARSED_FIELDS] &= ~PARSED_AMBIGUOUS_YEAR;
+			return computeEpochMillis(fields, plan);
+		}
+		if (epochMillis < ARITHMETIC_MIN_MILLIS || epochMillis >= ARITHMETIC_MAX_MILLIS) {
+			return PARSE_ERROR;
+		}
+		return epochMillis;
+	}
+	
+	/**
+	 * The local date and time of parsed fields as millis from 1970-01-01 
+	 * 00:00 local, with no zone involved; PARSE_ERROR as in 
+	 * computeEpochMillis().
+	 */
+	protected long computeLocalMillis(int[] fields) {
+		int parsed = fields[PARSED_FIELDS];
+		
+		if ((parsed & (1 << FIELD_ERA)) != 0 && fields[FIELD_ERA] != GregorianCalendar.AD) {
+			return PARSE_ERROR;
+		}
+		
+		int year = (parsed & (1 << FIELD_YEAR)) != 0 ? fields[FIELD_YEAR] : 1970;
+		if (year < 1500 || year > 10100) {
+			return PARSE_ERROR;
+		}
+		
+		long epochDay;
+		if ((parsed & (1 << FIELD_DAY_OF_YEAR)) != 0) {
+			epochDay = epochDay(year, 1, 1) + fields[FIELD_DAY_OF_YEAR] - 1;
+		}
+		else {
+			int month = (parsed & (1 << FIELD_MONTH)) != 0 ? fields[FIELD_MONTH] : 1;
+			int day = (parsed & (1 << FIELD_DAY_OF_MONTH)) != 0 ? fields[FIELD_DAY_OF_MONTH] : 1;
+			epochDay = epochDay(year, month, 1) + day - 1;
+		}
+		
+		long hourOfDay;
+		if ((parsed & (1 << FIELD_HOUR_OF_DAY)) != 0) {
+			hourOfDay = fields[FIELD_HOUR_OF_DAY];
+		}
+		else if ((parsed & (1 << FIELD_CLOCK_HOUR_OF_DAY)) != 0) {
+			hourOfDay = fields[FIELD_CLOCK_HOUR_OF_DAY] % 24;
+		}
+		else {
+			int hour = (parsed & (1 << FIELD_HOUR)) != 0 ? fields[FIELD_HOUR] : (parsed & (1 << FIELD_CLOCK_HOUR)) != 0 ? fields[FIELD_CLOCK_HOUR] % 12 : 0;
+			hourOfDay = hour + ((parsed & (1 << FIELD_AM_PM)) != 0 ? 12 * fields[FIELD_AM_PM] : 0);
+		}
 		
-		if (token.type != null) {
-			tokens.add(token);
+		return epochDay * MILLIS_PER_DAY + hourOfDay * 3600000L + fields[FIELD_MINUTE] * 60000L 
+				+ fields[FIELD_SECOND] * 1000L + fields[FIELD_MILLISECOND];
+	}
+	
+	/**
+	 * Local wall time to instant in this formatter's zone, as a lenient 
+	 * GregorianCalendar resolves it. For the JDK's tz database zones 
+	 * (wallTimeZone) a time repeated by an offset decrease maps to its 
+	 * later instant, and a time skipped by an increase is read with the 
+	 * offset from before the gap; the offsets in force a day before and 
+	 * after bracket the transition, if any. Other zones, like 
+	 * SimpleTimeZone, take the offset at local time minus raw offset.
+	 */
+	protected long localToEpochMillis(long local, boolean wallTimeZone) {
+		if (!wallTimeZone) {
+			return local - zone.getOffset(local - zone.getRawOffset());
 		}
+		
+		int after = zone.getOffset(local + MILLIS_PER_DAY);
+		long epochMillis = local - after;
+		if (zone.getOffset(epochMillis) == after) {
+			return epochMillis;
+		}
+		return local - zone.getOffset(local - MILLIS_PER_DAY);
+	}
+	
+	/**
+	 * The stretch of local time around local over which localToEpochMillis() 
+	 * is a plain shift by one offset, and the DST flag does not change: 
+	 * from the previous transition (a repeated hour resolves to its later 
+	 * instant, so it belongs here) to a day before the next one, where the 
+	 * one-day lookahead starts to see it. Null outside the tz database 
+	 * zones, or when local falls in no such stretch.
+	 */
+	protected WallInterval wallInterval(long local) {
+		if (zoneRules == null || !parsePlan().wallTimeZone) {
+			return null;
+		}
+		
+		long epochMillis = localToEpochMillis(local, true);
+		int offset = zone.getOffset(epochMillis);
+		Instant instant = Instant.ofEpochMilli(epochMillis);
+		if (local - epochMillis != offset || zoneRules.getOffset(instant).getTotalSeconds() * 1000 != offset) {
+			return null;
+		}
+		
+		long localFrom = ARITHMETIC_MIN_MILLIS;
+		long localUntil = ARITHMETIC_MAX_MILLIS;
+		ZoneOffsetTransition previous = zoneRules.previousTransition(Instant.ofEpochMilli(epochMillis + 1));
+		if (previous != null) {
+			localFrom = Math.max(localFrom, previous.toEpochSecond() * 1000 + offset);
+		}
+		ZoneOffsetTransition next = zoneRules.nextTransition(instant);
+		if (next != null) {
+			localUntil = Math.min(localUntil, next.toEpochSecond() * 1000 - MILLIS_PER_DAY);
+		}
+		if (local < localFrom || local >= localUntil) {
+			return null;
+		}
+		
+		boolean daylight = zone.inDaylightTime(new Date(epochMillis));
+		if (zone.inDaylightTime(new Date(localFrom - offset)) != daylight || zone.inDaylightTime(new Date(localUntil - 1 - offset)) != daylight) {
+			return null;
+		}
+		return new WallInterval(localFrom, localUntil, offset, daylight);
+	}
+	
+	/**
+	 * Days from 1970-01-01 to the given proleptic Gregorian date; month may 
+	 * be outside 1..12.
+	 */
+	protected static long epochDay(int year, int month, int day) {
+		long y = year + Math.floorDiv(month - 1, 12);
+		int m = Math.floorMod(month - 1, 12) + 1;
+		
+		// years starting on March 1st, as in computeFields()
+		if (m <= 2) {
+			y--;
+		}
+		long era = Math.floorDiv(y, 400);
+		int yearOfEra = (int) (y - era * 400);
+		int marchMonth = m > 2 ? m - 3 : m + 9;
+		int dayOfYear = (153 * marchMonth + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097 + dayOfEra - 719468;
+	}
+	
+	/**
+	 * Reads text[pos, end) through the plan's FixedLayout when it has the 
+	 * layout's length, and through the parser chain when the layout does 
+	 * not apply or rejects it.
+	 */
+	protected static int parseFields(ParsePlan plan, CharSequence text, int pos, int end, int[] fields) {
+		FixedLayout layout = plan.layout;
+		if (layout != null && end - pos == layout.length) {
+			if (layout.parse(text, pos, fields)) {
+				return end;
+			}
+		}
+		return parseFields(plan.parsers, text, pos, end, fields);
+	}
+	
+	/**
+	 * Runs the parser chain over text[pos, end); returns the position after 
+	 * the last field or, on failure, ~errorIndex.
+	 */
+	protected static int parseFields(FieldParser[] parsers, CharSequence text, int pos, int end, int[] fields) {
+		for (FieldParser parser : parsers) {
+			pos = parser.parse(text, pos, end, fields);
+			if (pos < 0) {
+				break;
+			}
+		}
+		return pos;
+	}
+	
+	/**
+	 * Turns parsed fields into an instant through a clone of the calendar 
+	 * prototype. Fields are set in pattern order, as SimpleDateFormat does, 
+	 * so the calendar resolves conflicting ones (e.g. E and d) the same way.
+	 */
+	protected long resolveFields(FieldParser[] parsers, int[] fields) {
+		int parsed = fields[PARSED_FIELDS];
+		long centuryStart = Long.MIN_VALUE;
+		
+		for (FieldParser parser : parsers) {
+			if (parser instanceof YearParser && (parsed & PARSED_AMBIGUOUS_YEAR) != 0) {
+				centuryStart = ((YearParser) parser).centuryStartMillis;
+			}
+		}
+		
+		// as in SimpleDateFormat, the next century is resolved from scratch, explicit zone fields included
+		long epochMillis = resolveFields(parsers, fields, 0);
+		if (epochMillis < centuryStart) {
+			epochMillis = resolveFields(parsers, fields, 100);
+		}
+		
+		if ((parsed & (1 << FIELD_DAYLIGHT)) != 0 && (parsed & (1 << FIELD_ZONE_OFFSET)) == 0) {
+			epochMillis = withDaylight(epochMillis, fields[FIELD_DAYLIGHT] != 0);
+		}
+		return epochMillis;
+	}
+	
+	/**
+	 * resolveFields() with yearShift added to the (week) year.
+	 */
+	protected long resolveFields(FieldParser[] parsers, int[] fields, int yearShift) {
+		GregorianCalendar calendar = (GregorianCalendar) prototype.clone();
+		calendar.clear();
+		int parsed = fields[PARSED_FIELDS];
+		boolean weekDate = (parsed & (1 << FIELD_WEEK_YEAR)) != 0 && (parsed & (1 << FIELD_WEEK_OF_YEAR)) != 0;
+		
+		for (FieldParser parser : parsers) {
+			int field = parser.field;
+			if (field < 0) {
+				continue;
+			}
+			int value = fields[field];
+			switch (field) {
+				case FIELD_ERA:
+					calendar.set(Calendar.ERA, value);
+					break;
+				case FIELD_YEAR:
+					calendar.set(Calendar.YEAR, value + yearShift);
+					break;
+				case FIELD_WEEK_YEAR:
+					if (!weekDate) {
+						calendar.set(Calendar.YEAR, value + yearShift);
+					}
+					break;
+				case FIELD_MONTH:
+					calendar.set(Calendar.MONTH, value - 1);
+					break;
+				case FIELD_WEEK_OF_YEAR:
+					if (!weekDate) {
+						calendar.set(Calendar.WEEK_OF_YEAR, value);
+					}
+					break;
+				case FIELD_WEEK_OF_MONTH:
+					calendar.set(Calendar.WEEK_OF_MONTH, value);
+					break;
+				case FIELD_DAY_OF_YEAR:
+					calendar.set(Calendar.DAY_OF_YEAR, value);
+					break;
+				case FIELD_DAY_OF_MONTH:
+					calendar.set(Calendar.DAY_OF_MONTH, value);
+					break;
+				case FIELD_DAY_OF_WEEK_IN_MONTH:
+					calendar.set(Calendar.DAY_OF_WEEK_IN_MONTH, value);
+					break;
+				case FIELD_DAY_OF_WEEK:
+					calendar.set(Calendar.DAY_OF_WEEK, value);
+					break;
+				case FIELD_ISO_DAY_OF_WEEK:
+					calendar.set(Calendar.DAY_OF_WEEK, value % 7 + 1);
+					break;
+				case FIELD_AM_PM:
+					calendar.set(Calendar.AM_PM, value);
+					break;
+				case FIELD_HOUR:
+					calendar.set(Calendar.HOUR, value);
+					break;
+				case FIELD_CLOCK_HOUR:
+					calendar.set(Calendar.HOUR, value % 12);
+					break;
+				case FIELD_HOUR_OF_DAY:
+					calendar.set(Calendar.HOUR_OF_DAY, value);
+					break;
+				case FIELD_CLOCK_HOUR_OF_DAY:
+					calendar.set(Calendar.HOUR_OF_DAY, value % 24);
+					break;
+				case FIELD_MINUTE:
+					calendar.set(Calendar.MINUTE, value);
+					break;
+				case FIELD_SECOND:
+					calendar.set(Calendar.SECOND, value);
+					break;
+				case FIELD_MILLISECOND:
+					calendar.set(Calendar.MILLISECOND, value);
+					break;
+				case FIELD_ZONE_OFFSET:
+					calendar.set(Calendar.ZONE_OFFSET, value);
+					calendar.set(Calendar.DST_OFFSET, 0);
+					break;
+			}
+		}
+		
+		if (weekDate) {
+			int dayOfWeek = firstDayOfWeek;
+			if ((parsed & (1 << FIELD_DAY_OF_WEEK)) != 0) {
+				dayOfWeek = fields[FIELD_DAY_OF_WEEK];
+			}
+			else if ((parsed & (1 << FIELD_ISO_DAY_OF_WEEK)) != 0) {
+				dayOfWeek = fields[FIELD_ISO_DAY_OF_WEEK] % 7 + 1;
+			}
+			calendar.setWeekDate(fields[FIELD_WEEK_YEAR] + yearShift, fields[FIELD_WEEK_OF_YEAR], dayOfWeek);
+		}
+		
+		return calendar.getTimeInMillis();
+	}
+	
+	/**
+	 * A 'z' name only tells whether the local time was daylight time in this 
+	 * formatter's zone; that matters in the repeated hour after a DST end, 
+	 * where the calendar picks one of the two instants. The other one is 
+	 * found from the offset in force half a day away.
+	 */
+	protected long withDaylight(long epochMillis, boolean daylight) {
+		if (zone.inDaylightTime(new Date(epochMillis)) == daylight) {
+			return epochMillis;
+		}
+		
+		int offset = zone.getOffset(epochMillis);
+		for (long neighbour : new long[] {epochMillis - MILLIS_PER_DAY / 2, epochMillis + MILLIS_PER_DAY / 2}) {
+			int otherOffset = zone.getOffset(neighbour);
+			long candidate = epochMillis + offset - otherOffset;
+			if (otherOffset != offset && zone.getOffset(candidate) == otherOffset && zone.inDaylightTime(new Date(candidate)) == daylight) {
+				return candidate;
+			}
+		}
+		return epochMillis;
+	}
+	
+	/**
+	 * The parser chain is only built the first time the formatter parses, 
+	 * so format-only formatters never pay for it.
+	 */
+	protected ParsePlan parsePlan() {
+		ParsePlan plan = this.parsePlan;
+		if (plan == null) {
+			FieldParser[] parsers = compileParsers();
+			plan = new ParsePlan(parsers, compileLayout(parsers), isArithmeticPlan(parsers), zone);
+			this.parsePlan = plan;
+		}
+		return plan;
+	}
+	
+	/**
+	 * Whether parseToEpochMillis() can skip the calendar: plain Gregorian 
+	 * calendar, and no field whose meaning depends on the calendar's 
+	 * resolution order. A weekday is only accepted before the date it 
+	 * belongs to, where the calendar ignores it too.
+	 */
+	protected boolean isArithmeticPlan(FieldParser[] parsers) {
+		if (!arithmetic) {
+			return false;
+		}
+		
+		boolean date = false;
+		boolean dayOfYear = false;
+		boolean weekday = false;
+		boolean hourOfDay = false;
+		boolean hour = false;
+		
+		for (FieldParser parser : parsers) {
+			switch (parser.field) {
+				case -1:
+				case FIELD_ERA:
+				case FIELD_YEAR:
+				case FIELD_MINUTE:
+				case FIELD_SECOND:
+				case FIELD_MILLISECOND:
+				case FIELD_ZONE_OFFSET:
+					break;
+				case FIELD_MONTH:
+				case FIELD_DAY_OF_MONTH:
+					date = true;
+					break;
+				case FIELD_DAY_OF_YEAR:
+					dayOfYear = true;
+					break;
+				case FIELD_DAY_OF_WEEK:
+				case FIELD_ISO_DAY_OF_WEEK:
+					if (date || dayOfYear) {
+						return false;
+					}
+					weekday = true;
+					break;
+				case FIELD_HOUR_OF_DAY:
+				case FIELD_CLOCK_HOUR_OF_DAY:
+					hourOfDay = true;
+					break;
+				case FIELD_HOUR:
+				case FIELD_CLOCK_HOUR:
+				case FIELD_AM_PM:
+					hour = true;
+					break;
+				default:
+					return false;
+			}
+		}
+		
+		return !(date && dayOfYear) && !(hourOfDay && hour) && !(weekday && !date && !dayOfYear);
+	}
+	
+	protected FieldParser[] compileParsers() {
+		List<FieldParser> chain = new ArrayList<FieldParser>();
+		Calendar centuryStart = centuryStart();
+		
+		for (int i = 0; i < tokens.size(); i++) {
+			FormatToken token = tokens.get(i);
+			if (token.type != FormatType.FORMATTER) {
+				String text = token.literal();
+				if (text.length() > 0) {
+					chain.add(new LiteralParser(text));
+				}
+				continue;
+			}
+			
+			// abutting numbers, as in "yyyyMMdd", are read at their pattern width
+			boolean abutting = i + 1 < tokens.size() && isNumeric(tokens.get(i + 1));
+			chain.add(compileParser(pattern.charAt(token.start), token.length(), abutting, centuryStart));
+		}
+		
+		return chain.toArray(new FieldParser[chain.size()]);
+	}
+	
+	/**
+	 * The FixedLayout of a pattern made only of numbers of at most 
+	 * FixedLayout.MAX_WIDTH letters and of Latin-1 literals without 
+	 * digits, such as "yyyyMMddHHmmssSSS" or "yyyy-MM-dd HH:mm:ss"; null 
+	 * for any other pattern. Text with each number at its pattern width then reads the 
+	 * same through the layout as through the chain: a number ends either 
+	 * at its width, at a non-digit literal or at the end of the text.
+	 */
+	protected FixedLayout compileLayout(FieldParser[] parsers) {
+		StringBuilder template = new StringBuilder();
+		List<NumberParser> numbers = new ArrayList<NumberParser>();
+		List<Integer> offsets = new ArrayList<Integer>();
+		List<Integer> widths = new ArrayList<Integer>();
+		int next = 0;
+		
+		for (FormatToken token : tokens) {
+			if (token.type != FormatType.FORMATTER) {
+				String text = token.literal();
+				for (int i = 0; i < text.length(); i++) {
+					if (Character.digit(text.charAt(i), 10) >= 0 || text.charAt(i) > 0xFF) {
+						return null;
+					}
+				}
+				if (text.length() > 0) {
+					next++;
+				}
+				template.append(text);
+				continue;
+			}
+			
+			FieldParser parser = parsers[next++];
+			if (!isNumeric(token) || !(parser instanceof NumberParser) || token.length() > FixedLayout.MAX_WIDTH) {
+				return null;
+			}
+			numbers.add((NumberParser) parser);
+			offsets.add(template.length());
+			widths.add(token.length());
+			for (int i = 0; i < token.length(); i++) {
+				template.append('0');
+			}
+		}
+		
+		if (numbers.isEmpty()) {
+			return null;
+		}
+		return new FixedLayout(template.toString(), numbers, offsets, widths);
+	}
+	
+	protected boolean isNumeric(FormatToken token) {
+		if (token.type != FormatType.FORMATTER) {
+			return false;
+		}
+		char c = pattern.charAt(token.start);
+		return "yYwWDdFuhHkKmsS".indexOf(c) >= 0 || (c == 'M' && token.length() < 3);
+	}
+	
+	protected FieldParser compileParser(char c, int length, boolean abutting, Calendar centuryStart) {
+		int width = abutting ? length : 0;
+		
+		switch (c) {
+			case 'G':
+				return new NameParser(FIELD_ERA, symbols.eraTrie());
+			case 'y':
+				return new YearParser(FIELD_YEAR, width, length <= 2 ? centuryStart : null);
+			case 'Y':
+				return new YearParser(FIELD_WEEK_YEAR, width, length <= 2 ? centuryStart : null);
+			case 'M':
+				if (length < 3) return new NumberParser(FIELD_MONTH, width);
+				return new NameParser(FIELD_MONTH, symbols.monthTrie());
+			case 'w':
+				return new NumberParser(FIELD_WEEK_OF_YEAR, width);
+			case 'W':
+				return new NumberParser(FIELD_WEEK_OF_MONTH, width);
+			case 'D':
+				return new NumberParser(FIELD_DAY_OF_YEAR, width);
+			case 'd':
+				return new NumberParser(FIELD_DAY_OF_MONTH, width);
+			case 'F':
+				return new NumberParser(FIELD_DAY_OF_WEEK_IN_MONTH, width);
+			case 'E':
+				return new NameParser(FIELD_DAY_OF_WEEK, symbols.weekdayTrie());
+			case 'u':
+				return new NumberParser(FIELD_ISO_DAY_OF_WEEK, width);
+			case 'a':
+				return new NameParser(FIELD_AM_PM, symbols.amPmTrie());
+			case 'h':
+				return new NumberParser(FIELD_CLOCK_HOUR, width);
+			case 'H':
+				return new NumberParser(FIELD_HOUR_OF_DAY, width);
+			case 'k':
+				return new NumberParser(FIELD_CLOCK_HOUR_OF_DAY, width);
+			case 'K':
+				return new NumberParser(FIELD_HOUR, width);
+			case 'm':
+				return new NumberParser(FIELD_MINUTE, width);
+			case 's':
+				return new NumberParser(FIELD_SECOND, width);
+			case 'S':
+				return new NumberParser(FIELD_MILLISECOND, width);
+			case 'z':
+				return new ZoneNameParser(zone, locale);
+			case 'Z':
+				return new ZoneOffsetParser(0);
+			case 'X':
+				return new ZoneOffsetParser(length);
+			case 'o':
+				return new OrdinalParser(FIELD_DAY_OF_MONTH);
+			case 'O':
+				return new OrdinalParser(FIELD_DAY_OF_YEAR);
+			default:
+				throw new IllegalArgumentException ("Illegal pattern character " + c);
+		}
+	}
+	
+	/**
+	 * Start of the hundred years two-digit years are placed in.
+	 */
+	protected Calendar centuryStart() {
+		GregorianCalendar centuryStart = new GregorianCalendar(zone, locale);
+		centuryStart.add(Calendar.YEAR, -80);
+		return centuryStart;
+	}
+	
+	/**
+	 * Returns the last rendered text if the instant falls in the interval 
+	 * it is valid for; otherwise renders the instant and, when possible, 
+	 * publishes it with its own interval. That interval is the local minute, 
+	 * hour, day, month or year of the instant, clipped to the zone's 
+	 * surrounding offset transitions, so DST changes always start a new 
+	 * interval. A miss far from the cached interval (random input) is only 
+	 * rebuilt once in BOUNDARY_RESEED_ODDS; returns null, for the caller to 
+	 * render as usual, then and when the instant cannot be cached at all.
+	 */
+	protected BoundarySnapshot boundarySnapshot(long epochMillis, CompiledPattern compiled) {
+		BoundarySnapshot snapshot = this.boundarySnapshot;
+		
+		if (snapshot != null && epochMillis >= snapshot.validFrom && epochMillis < snapshot.validUntil && snapshot.compiled == compiled) {
+			return snapshot;
+		}
+		
+		if (zoneRules == null || !arithmetic || epochMillis < ARITHMETIC_MIN_MILLIS || epochMillis >= ARITHMETIC_MAX_MILLIS) {
+			return null;
+		}
+		
+		if (snapshot != null && snapshot.compiled == compiled) {
+			long span = UNIT_SPANS[compiled.unit];
+			boolean nearby = epochMillis >= snapshot.validFrom - span && epochMillis < snapshot.validUntil + span;
+			if (!nearby && ThreadLocalRandom.current().nextInt(BOUNDARY_RESEED_ODDS) != 0) {
+				return null;
+			}
+		}
+		
+		int[] fields = loadFields(epochMillis, compiled);
+		StringBuilder text = new StringBuilder();
+		for (FieldPrinter printer : compiled.printers) {
+			printer.print(fields, text);
+		}
+		
+		snapshot = boundarySnapshot(epochMillis, fields, compiled, compiled.unit, text.toString());
+		if (snapshot != null) {
+			this.boundarySnapshot = snapshot;
+		}
+		return snapshot;
+	}
+	
+	/**
+	 * The snapshot of text over the local unit (minute to year) holding the 
+	 * decomposed instant, clipped to the zone's surrounding offset 
+	 * transitions; null when the zone rules disagree with the offset or the 
+	 * DST flag changes within it.
+	 */
+	protected BoundarySnapshot boundarySnapshot(long epochMillis, int[] fields, CompiledPattern compiled, int unit, String text) {
+		int offset = fields[FIELD_ZONE_OFFSET];
+		long localDay = Math.floorDiv(epochMillis + offset, MILLIS_PER_DAY);
+		long localStart;
+		long localEnd;
+		
+		switch (unit) {
+			case UNIT_MINUTE:
+				localStart = epochMillis + offset - Math.floorMod(epochMillis + offset, 60000L);
+				localEnd = localStart + 60000L;
+				break;
+			case UNIT_HOUR:
+				localStart = epochMillis + offset - Math.floorMod(epochMillis + offset, 3600000L);
+				localEnd = localStart + 3600000L;
+				break;
+			case UNIT_DAY:
+				localStart = localDay * MILLIS_PER_DAY;
+				localEnd = localStart + MILLIS_PER_DAY;
+				break;
+			case UNIT_MONTH:
+				int month = fields[FIELD_MONTH];
+				int monthLength = (month == 12 ? 365 : DAYS_BEFORE_MONTH[month]) - DAYS_BEFORE_MONTH[month - 1] 
+						+ (month == 2 && isLeapYear(fields[FIELD_YEAR]) ? 1 : 0);
+				localStart = (localDay - fields[FIELD_DAY_OF_MONTH] + 1) * MILLIS_PER_DAY;
+				localEnd = localStart + monthLength * MILLIS_PER_DAY;
+				break;
+			default:
+				localStart = (localDay - fields[FIELD_DAY_OF_YEAR] + 1) * MILLIS_PER_DAY;
+				localEnd = localStart + (isLeapYear(fields[FIELD_YEAR]) ? 366 : 365) * MILLIS_PER_DAY;
+		}
+		
+		long validFrom = localStart - offset;
+		long validUntil = localEnd - offset;
+		
+		Instant instant = Instant.ofEpochMilli(epochMillis);
+		if (zoneRules.getOffset(instant).getTotalSeconds() * 1000 != offset) {
+			return null;
+		}
+		
+		ZoneOffsetTransition previous = zoneRules.previousTransition(Instant.ofEpochMilli(epochMillis + 1));
+		if (previous != null) {
+			validFrom = Math.max(validFrom, previous.toEpochSecond() * 1000);
+		}
+		ZoneOffsetTransition next = zoneRules.nextTransition(instant);
+		if (next != null) {
+			validUntil = Math.min(validUntil, next.toEpochSecond() * 1000);
+		}
+		
+		// zone names also follow the DST flag, which may flip without an offset change
+		if (compiled.usesDaylight) {
+			boolean daylight = fields[FIELD_DAYLIGHT] != 0;
+			if (zone.inDaylightTime(new Date(validFrom)) != daylight || zone.inDaylightTime(new Date(validUntil - 1)) != daylight) {
+				return null;
+			}
+		}
+		
+		return new BoundarySnapshot(compiled, text, validFrom, validUntil);
+	}
+	
+	/**
+	 * The epoch interval of the decomposed instant's local day over which 
+	 * only the time fields change (see computeTimeFields()), as a snapshot 
+	 * without text; null when there is none.
+	 */
+	protected BoundarySnapshot daySnapshot(long epochMillis, int[] fields, CompiledPattern compiled) {
+		if (zoneRules == null || !arithmetic || epochMillis < ARITHMETIC_MIN_MILLIS || epochMillis >= ARITHMETIC_MAX_MILLIS) {
+			return null;
+		}
+		return boundarySnapshot(epochMillis, fields, compiled, UNIT_DAY, null);
+	}
+	
+	/**
+	 * Zone rules matching the given zone, or null for zones (e.g. custom 
+	 * SimpleTimeZones) whose transitions java.time cannot tell us.
+	 */
+	protected static ZoneRules zoneRules(TimeZone zone) {
+		try {
+			ZoneId id = zone.toZoneId();
+			if (zone.hasSameRules(TimeZone.getTimeZone(id))) {
+				return id.getRules();
+			}
+		}
+		catch (RuntimeException e) {
+			// unknown or malformed ID: no boundary caching
+		}
+		return null;
+	}
+	
+	/**
+	 * Returns the snapshot for the instant's second, rendering and 
+	 * publishing a new one when the second changed. Returns null when the 
+	 * zone offset is not a whole number of seconds, as the milliseconds of 
+	 * the local time then differ from those of the epoch value.
+	 */
+	protected SecondSnapshot secondSnapshot(long epochMillis, CompiledPattern compiled) {
+		long epochSecond = Math.floorDiv(epochMillis, 1000L);
+		SecondSnapshot snapshot = this.secondSnapshot;
+		
+		if (snapshot != null && snapshot.epochSecond == epochSecond && snapshot.compiled == compiled) {
+			return snapshot;
+		}
+		
+		snapshot = secondSnapshot(epochSecond, loadFields(epochMillis, compiled), compiled);
+		if (snapshot != null) {
+			this.secondSnapshot = snapshot;
+		}
+		return snapshot;
+	}
+	
+	/**
+	 * Renders the snapshot of the second holding the decomposed instant, 
+	 * without publishing it.
+	 */
+	protected SecondSnapshot secondSnapshot(long epochSecond, int[] fields, CompiledPattern compiled) {
+		if (fields[FIELD_ZONE_OFFSET] % 1000 != 0) {
+			return null;
+		}
+		
+		StringBuilder text = new StringBuilder();
+		List<NumberPrinter> millisPrinters = new ArrayList<NumberPrinter>();
+		List<Integer> splits = new ArrayList<Integer>();
+		
+		for (FieldPrinter printer : compiled.printers) {
+			if (printer instanceof NumberPrinter && ((NumberPrinter) printer).field == FIELD_MILLISECOND) {
+				millisPrinters.add((NumberPrinter) printer);
+				splits.add(text.length());
+			}
+			else {
+				printer.print(fields, text);
+			}
+		}
+		
+		return new SecondSnapshot(compiled, epochSecond, text.toString().toCharArray(), splits, millisPrinters);
+	}
+	
+	/**
+	 * Decomposes the instant into a fresh field array. The calendar 
+	 * fallback works on a call-local copy; the prototype itself is never 
+	 * mutated after construction.
+	 */
+	protected int[] loadFields(long epochMillis, CompiledPattern compiled) {
+		int[] fields = new int[FIELD_COUNT];
+		
+		if (arithmetic && epochMillis >= ARITHMETIC_MIN_MILLIS && epochMillis < ARITHMETIC_MAX_MILLIS) {
+			computeFields(epochMillis, fields, compiled.usesWeeks, compiled.usesDaylight);
+		}
+		else {
+			Calendar calendar = (Calendar) prototype.clone();
+			calendar.setTimeInMillis(epochMillis);
+			loadFields(calendar, fields, compiled.usesWeeks);
+		}
+		
+		return fields;
+	}
+	
+	/**
+	 * loadFields() for a local time whose offset is already known, e.g. 
+	 * from a WallInterval; null when the instant needs the calendar.
+	 */
+	protected int[] loadFields(long local, int offset, boolean daylight, CompiledPattern compiled) {
+		long epochMillis = local - offset;
+		if (!arithmetic || epochMillis < ARITHMETIC_MIN_MILLIS || epochMillis >= ARITHMETIC_MAX_MILLIS) {
+			return null;
+		}
+		
+		int[] fields = new int[FIELD_COUNT];
+		computeLocalFields(local, fields, compiled.usesWeeks);
+		fields[FIELD_ZONE_OFFSET] = offset;
+		fields[FIELD_DAYLIGHT] = compiled.usesDaylight && daylight ? 1 : 0;
+		return fields;
+	}
+	
+	/**
+	 * Civil-from-days decomposition of the local date and time, with week 
+	 * numbering following GregorianCalendar.computeFields for years past 
+	 * the Gregorian cutover.
+	 */
+	protected void computeFields(long epochMillis, int[] fields, boolean weeks, boolean daylight) {
+		int offset = zone.getOffset(epochMillis);
+		computeLocalFields(epochMillis + offset, fields, weeks);
+		fields[FIELD_ZONE_OFFSET] = offset;
+		fields[FIELD_DAYLIGHT] = daylight && zone.inDaylightTime(new Date(epochMillis)) ? 1 : 0;
+	}
+	
+	/**
+	 * The zone-independent part of computeFields(), from local millis.
+	 */
+	protected void computeLocalFields(long local, int[] fields, boolean weeks) {
+		long epochDay = Math.floorDiv(local, MILLIS_PER_DAY);
+		int millisOfDay = (int) (local - epochDay * MILLIS_PER_DAY);
+		
+		// days since 0000-03-01, so that the leap day ends each 4 year cycle
+		long shifted = epochDay + 719468;
+		int era = (int) (shifted / 146097);
+		int dayOfEra = (int) (shifted - era * 146097L);
+		int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		int marchDay = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		int marchMonth = (5 * marchDay + 2) / 153;
+		int dayOfMonth = marchDay - (153 * marchMonth + 2) / 5 + 1;
+		int month = marchMonth < 10 ? marchMonth + 3 : marchMonth - 9;
+		int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+		
+		boolean leap = isLeapYear(year);
+		int dayOfYear = DAYS_BEFORE_MONTH[month - 1] + dayOfMonth + (leap && month > 2 ? 1 : 0);
+		int dayOfWeek = (int) Math.floorMod(epochDay + 4, 7L) + 1;
+		
+		fields[FIELD_ERA] = GregorianCalendar.AD;
+		fields[FIELD_YEAR] = year;
+		fields[FIELD_MONTH] = month;
+		fields[FIELD_DAY_OF_YEAR] = dayOfYear;
+		fields[FIELD_DAY_OF_MONTH] = dayOfMonth;
+		fields[FIELD_DAY_OF_WEEK_IN_MONTH] = (dayOfMonth - 1) / 7 + 1;
+		fields[FIELD_DAY_OF_WEEK] = dayOfWeek;
+		fields[FIELD_ISO_DAY_OF_WEEK] = dayOfWeek == 1 ? 7 : dayOfWeek - 1;
+		computeTimeFields(millisOfDay, fields);
+		
+		if (weeks) {
+			long jan1 = epochDay - dayOfYear + 1;
+			int weekOfYear = weekNumber(jan1, epochDay);
+			int weekYear = year;
+			
+			if (weekOfYear == 0) {
+				long previousJan1 = jan1 - (isLeapYear(year - 1) ? 366 : 365);
+				weekOfYear = weekNumber(previousJan1, jan1 - 1);
+			}
+			else if (weekOfYear >= 52) {
+				long nextJan1 = jan1 + (leap ? 366 : 365);
+				long nextWeek1 = dayOfWeekOnOrBefore(nextJan1 + 6, firstDayOfWeek);
+				if (nextWeek1 - nextJan1 >= minimalDaysInFirstWeek && epochDay >= nextWeek1 - 7) {
+					weekOfYear = 1;
+				}
+			}
+			
+			if (month == 1 && weekOfYear >= 52) {
+				weekYear--;
+			}
+			else if (month != 1 && weekOfYear == 1) {
+				weekYear++;
+			}
+			
+			fields[FIELD_WEEK_YEAR] = weekYear;
+			fields[FIELD_WEEK_OF_YEAR] = weekOfYear;
+			fields[FIELD_WEEK_OF_MONTH] = weekNumber(epochDay - dayOfMonth + 1, epochDay);
+		}
+	}
+	
+	/**
+	 * The time-of-day part of computeLocalFields(), which leaves the date 
+	 * fields alone.
+	 */
+	protected static void computeTimeFields(int millisOfDay, int[] fields) {
+		int hourOfDay = millisOfDay / 3600000;
+		int hour = hourOfDay % 12;
+		
+		fields[FIELD_AM_PM] = hourOfDay < 12 ? Calendar.AM : Calendar.PM;
+		fields[FIELD_HOUR] = hour;
+		fields[FIELD_CLOCK_HOUR] = hour == 0 ? 12 : hour;
+		fields[FIELD_HOUR_OF_DAY] = hourOfDay;
+		fields[FIELD_CLOCK_HOUR_OF_DAY] = hourOfDay == 0 ? 24 : hourOfDay;
+		fields[FIELD_MINUTE] = millisOfDay / 60000 % 60;
+		fields[FIELD_SECOND] = millisOfDay / 1000 % 60;
+		fields[FIELD_MILLISECOND] = millisOfDay % 1000;
+	}
+	
+	private int weekNumber(long firstDay, long epochDay) {
+		long firstWeekStart = dayOfWeekOnOrBefore(firstDay + 6, firstDayOfWeek);
+		if (firstWeekStart - firstDay >= minimalDaysInFirstWeek) {
+			firstWeekStart -= 7;
+		}
+		return (int) Math.floorDiv(epochDay - firstWeekStart, 7L) + 1;
+	}
+	
+	protected static long dayOfWeekOnOrBefore(long epochDay, int dayOfWeek) {
+		return epochDay - Math.floorMod(epochDay + 4 - (dayOfWeek - 1), 7L);
+	}
+	
+	protected static boolean isLeapYear(int year) {
+		return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+	}
+	
+	/**
+	 * Copies the calendar fields the printers read into a flat array, so
+	 * each printer is a plain array lookup.
+	 */
+	protected static void loadFields(Calendar cal, int[] fields, boolean weeks) {
+		int dayOfWeek = cal.get(Calendar.DAY_OF_WEEK);
+		int hour = cal.get(Calendar.HOUR);
+		int hourOfDay = cal.get(Calendar.HOUR_OF_DAY);
+		
+		fields[FIELD_ERA] = cal.get(Calendar.ERA);
+		fields[FIELD_YEAR] = cal.get(Calendar.YEAR);
+		fields[FIELD_WEEK_YEAR] = weeks ? cal.getWeekYear() : 0;
+		fields[FIELD_MONTH] = cal.get(Calendar.MONTH) + 1;
+		fields[FIELD_WEEK_OF_YEAR] = cal.get(Calendar.WEEK_OF_YEAR);
+		fields[FIELD_WEEK_OF_MONTH] = cal.get(Calendar.WEEK_OF_MONTH);
+		fields[FIELD_DAY_OF_YEAR] = cal.get(Calendar.DAY_OF_YEAR);
+		fields[FIELD_DAY_OF_MONTH] = cal.get(Calendar.DAY_OF_MONTH);
+		fields[FIELD_DAY_OF_WEEK_IN_MONTH] = cal.get(Calendar.DAY_OF_WEEK_IN_MONTH);
+		fields[FIELD_DAY_OF_WEEK] = dayOfWeek;
+		fields[FIELD_ISO_DAY_OF_WEEK] = dayOfWeek == 1 ? 7 : dayOfWeek - 1;
+		fields[FIELD_AM_PM] = cal.get(Calendar.AM_PM);
+		fields[FIELD_HOUR] = hour;
+		fields[FIELD_CLOCK_HOUR] = hour == 0 ? 12 : hour;
+		fields[FIELD_HOUR_OF_DAY] = hourOfDay;
+		fields[FIELD_CLOCK_HOUR_OF_DAY] = hourOfDay == 0 ? 24 : hourOfDay;
+		fields[FIELD_MINUTE] = cal.get(Calendar.MINUTE);
+		fields[FIELD_SECOND] = cal.get(Calendar.SECOND);
+		fields[FIELD_MILLISECOND] = cal.get(Calendar.MILLISECOND);
+		fields[FIELD_ZONE_OFFSET] = cal.get(Calendar.ZONE_OFFSET) + cal.get(Calendar.DST_OFFSET);
+		fields[FIELD_DAYLIGHT] = cal.get(Calendar.DST_OFFSET) != 0 ? 1 : 0;
+	}
+	
+	protected static String ordinalSuffix(int day) {
+		if (day >= 0 && day < ORDINAL_SUFFIXES.length) {
+			return ORDINAL_SUFFIXES[day];
+		}
+		return computeOrdinalSuffix(day);
+	}
+	
+	private static String computeOrdinalSuffix(int day) {
+		switch(day % 10) {
+		case 1:
+			return ((day/10) % 10) != 1 ? "st" : "th";
+		case 2:
+			return ((day/10) % 10) != 1 ? "nd" : "th";
+		case 3:
+			return ((day/10) % 10) != 1 ? "rd" : "th";
+		default:
+			return "th";
+		}
+	}
+	
+	protected void applyPattern(String pattern) {
+		if (pattern == null) {
+			throw new NullPointerException("Pattern cannot be null");
+		}
+		
+		this.pattern = pattern;
+		lexAnalyzer();
+		compile();
+	}
+	
+	/**
+	 * Turns the token list into the printer chain used by format(). Quotes
+	 * are stripped and field widths fixed here, once, and unknown pattern
+	 * letters are rejected before the formatter is ever used.
+	 */
+	protected void compile() {
+		List<FieldPrinter> chain = new ArrayList<FieldPrinter>();
+		boolean weeks = false;
+		boolean daylight = false;
+		int unit = UNIT_YEAR;
+		
+		for (FormatToken token : tokens) {
+			if (token.type != FormatType.FORMATTER) {
+				String text = token.literal();
+				if (text.length() > 0) {
+					chain.add(new LiteralPrinter(text));
+				}
+				continue;
+			}
+			
+			char c = pattern.charAt(token.start);
+			weeks |= c == 'Y' || c == 'w' || c == 'W';
+			daylight |= c == 'z';
+			unit = Math.min(unit, unitOf(c));
+			try {
+				chain.add(compileField(c, token.length()));
+			}
+			catch (InvalidPatternException e) {
+				throw e;
+			}
+			catch (IllegalArgumentException e) {
+				throw new InvalidPatternException(e.getMessage(), token.start);
+			}
+		}
+		
+		if (daylight) {
+			unit = Math.min(unit, UNIT_DAY);
+		}
+		
+		this.compiled = new CompiledPattern(chain.toArray(new FieldPrinter[chain.size()]), weeks, daylight, unit);
+	}
+	
+	/**
+	 * Zone fields are left at UNIT_YEAR: their changes always coincide 
+	 * with offset transitions, which bound every cached interval anyway.
+	 */
+	protected static int unitOf(char c) {
+		switch (c) {
+			case 'S':
+				return UNIT_MILLISECOND;
+			case 's':
+				return UNIT_SECOND;
+			case 'm':
+				return UNIT_MINUTE;
+			case 'a':
+			case 'h':
+			case 'H':
+			case 'k':
+			case 'K':
+				return UNIT_HOUR;
+			case 'w':
+			case 'W':
+			case 'Y':
+			case 'D':
+			case 'd':
+			case 'F':
+			case 'E':
+			case 'u':
+			case 'o':
+			case 'O':
+				return UNIT_DAY;
+			case 'M':
+				return UNIT_MONTH;
+			default:
+				return UNIT_YEAR;
+		}
+	}
+	
+	protected FieldPrinter compileField(char c, int length) {
+		switch (c) {
+			case 'G':
+				return new TextPrinter(FIELD_ERA, symbols.eras, symbols.erasUtf8);
+			case 'y':
+				if (length == 2) return new ReducedNumberPrinter(FIELD_YEAR, length, zeroDigit, 100);
+				return new NumberPrinter(FIELD_YEAR, length, zeroDigit);
+			case 'Y':
+				if (length == 2) return new ReducedNumberPrinter(FIELD_WEEK_YEAR, length, zeroDigit, 100);
+				return new NumberPrinter(FIELD_WEEK_YEAR, length, zeroDigit);
+			case 'M':
+				if (length < 3) return new NumberPrinter(FIELD_MONTH, length, zeroDigit);
+				if (length > 3) return new TextPrinter(FIELD_MONTH, symbols.months, symbols.monthsUtf8);
+				return new TextPrinter(FIELD_MONTH, symbols.shortMonths, symbols.shortMonthsUtf8);
+			case 'w':
+				return new NumberPrinter(FIELD_WEEK_OF_YEAR, length, zeroDigit);
+			case 'W':
+				return new NumberPrinter(FIELD_WEEK_OF_MONTH, length, zeroDigit);
+			case 'D':
+				return new NumberPrinter(FIELD_DAY_OF_YEAR, length, zeroDigit);
+			case 'd':
+				return new NumberPrinter(FIELD_DAY_OF_MONTH, length, zeroDigit);
+			case 'F':
+				return new NumberPrinter(FIELD_DAY_OF_WEEK_IN_MONTH, length, zeroDigit);
+			case 'E':
+				if (length > 3) return new TextPrinter(FIELD_DAY_OF_WEEK, symbols.weekdays, symbols.weekdaysUtf8);
+				return new TextPrinter(FIELD_DAY_OF_WEEK, symbols.shortWeekdays, symbols.shortWeekdaysUtf8);
+			case 'u':
+				return new NumberPrinter(FIELD_ISO_DAY_OF_WEEK, length, zeroDigit);
+			case 'a':
+				return new TextPrinter(FIELD_AM_PM, symbols.amPmStrings, symbols.amPmUtf8);
+			case 'h':
+				return new NumberPrinter(FIELD_CLOCK_HOUR, length, zeroDigit);
+			case 'H':
+				return new NumberPrinter(FIELD_HOUR_OF_DAY, length, zeroDigit);
+			case 'k':
+				return new NumberPrinter(FIELD_CLOCK_HOUR_OF_DAY, length, zeroDigit);
+			case 'K':
+				return new NumberPrinter(FIELD_HOUR, length, zeroDigit);
+			case 'm':
+				return new NumberPrinter(FIELD_MINUTE, length, zeroDigit);
+			case 's':
+				return new NumberPrinter(FIELD_SECOND, length, zeroDigit);
+			case 'S':
+				return new NumberPrinter(FIELD_MILLISECOND, length, zeroDigit);
+			case 'z':
+				return new ZoneNamePrinter(zoneNames(zone, length < 4 ? TimeZone.SHORT : TimeZone.LONG, locale));
+			case 'Z':
+				return new ZoneOffsetPrinter(0, zeroDigit);
+			case 'X':
+				if (length > 3) {
+					throw new IllegalArgumentException ("Invalid ISO 8601 format: length=" + length);
+				}
+				return new ZoneOffsetPrinter(length, zeroDigit);
+			case 'o':
+				return new OrdinalPrinter(FIELD_DAY_OF_MONTH);
+			case 'O':
+				return new OrdinalPrinter(FIELD_DAY_OF_YEAR);
+			default:
+				throw new IllegalArgumentException ("Illegal pattern character " + c);
+		}
+	}
+	
+	
+	/**
+	 * Splits the pattern in one pass, without copying any text: 
+	 * FORMATTER tokens are runs of one pattern letter, TEXT tokens quoted 
+	 * sections (closing quote included), and SEPARATOR tokens everything 
+	 * else, a doubled quote standing for a literal one anywhere. No empty 
+	 * token is ever produced.
+	 */
+	protected void lexAnalyzer() {
+		List<FormatToken> tokens = new ArrayList<FormatToken>();
+		int length = pattern.length();
+		int i = 0;
+		
+		while (i < length) {
+			char c = pattern.charAt(i);
+			int start = i;
+			FormatType type;
+			
+			if (isPatternLetter(c)) {
+				type = FormatType.FORMATTER;
+				do {
+					i++;
+				} while (i < length && pattern.charAt(i) == c);
+			}
+			else if (c == SINGLE_QUOTE && (i + 1 == length || pattern.charAt(i + 1) != SINGLE_QUOTE)) {
+				type = FormatType.TEXT;
+				i++;
+				while (true) {
+					if (i == length) {
+						throw new InvalidPatternException("Unterminated quote", start);
+					}
+					if (pattern.charAt(i++) == SINGLE_QUOTE) {
+						if (i == length || pattern.charAt(i) != SINGLE_QUOTE) {
+							break;
+						}
+						i++;
+					}
+				}
+			}
+			else {
+				type = FormatType.SEPARATOR;
+				while (i < length) {
+					char d = pattern.charAt(i);
+					if (isPatternLetter(d)) {
+						break;
+					}
+					if (d == SINGLE_QUOTE) {
+						if (i + 1 == length || pattern.charAt(i + 1) != SINGLE_QUOTE) {
+							break;
+						}
+						i++;
+					}
+					i++;
+				}
+			}
+			
+			tokens.add(new FormatToken(type, start, i));
+		}
+		
+		this.tokens = tokens;
+	}
+	
+	protected static boolean isPatternLetter(char c) {
+		return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+	}
+	
+	/**
+	 * Appends value zero-padded to width digits, as "%0{width}d" would,
+	 * using the given zero digit as the base of the digit range. The 
+	 * builder is grown once and the digits are filled in from the end, 
+	 * two at a time.
+	 */
+	protected static void appendPadded(StringBuilder buffer, int value, int width, char zero) {
+		if (value < 0) {
+			buffer.append('-');
+			value = -value;
+			width--;
+		}
+		
+		int digits = digitCount(value);
+		int start = buffer.length();
+		int end = start + Math.max(digits, width);
+		int shift = zero - '0';
+		buffer.setLength(end);
+		
+		int pos = end;
+		while (value >= 10) {
+			int pair = (value % 100) << 1;
+			value /= 100;
+			buffer.setCharAt(--pos, (char) (DIGIT_PAIRS[pair + 1] + shift));
+			buffer.setCharAt(--pos, (char) (DIGIT_PAIRS[pair] + shift));
+		}
+		if (pos > start && (value > 0 || pos == end)) {
+			buffer.setCharAt(--pos, (char) (zero + value));
+		}
+		while (pos > start) {
+			buffer.setCharAt(--pos, zero);
+		}
+	}
+	
+	/**
+	 * Writes value zero-padded to width digits, as "%0{width}d" would.
+	 * 
+	 * @return the position right after the last digit
+	 */
+	protected static int writePadded(char[] buffer, int pos, int value, int width, char zero) {
+		if (value < 0) {
+			buffer[pos++] = '-';
+			value = -value;
+			width--;
+		}
+		
+		int shift = zero - '0';
+		if (width == 2 && value < 100) {
+			int pair = value << 1;
+			buffer[pos] = (char) (DIGIT_PAIRS[pair] + shift);
+			buffer[pos + 1] = (char) (DIGIT_PAIRS[pair + 1] + shift);
+			return pos + 2;
+		}
+		
+		int end = pos + Math.max(digitCount(value), width);
+		int i = end;
+		while (value >= 10) {
+			int pair = (value % 100) << 1;
+			value /= 100;
+			buffer[--i] = (char) (DIGIT_PAIRS[pair + 1] + shift);
+			buffer[--i] = (char) (DIGIT_PAIRS[pair] + shift);
+		}
+		if (i > pos && (value > 0 || i == end)) {
+			buffer[--i] = (char) (zero + value);
+		}
+		while (i > pos) {
+			buffer[--i] = zero;
+		}
+		
+		return end;
+	}
+	
+	/**
+	 * writePadded() into ASCII bytes, for the '0' zero digit.
+	 */
+	protected static int writePadded(byte[] buffer, int pos, int value, int width) {
+		if (value < 0) {
+			buffer[pos++] = '-';
+			value = -value;
+			width--;
+		}
+		
+		int end = pos + Math.max(digitCount(value), width);
+		int i = end;
+		while (value >= 10) {
+			int pair = (value % 100) << 1;
+			value /= 100;
+			buffer[--i] = (byte) DIGIT_PAIRS[pair + 1];
+			buffer[--i] = (byte) DIGIT_PAIRS[pair];
+		}
+		if (i > pos && (value > 0 || i == end)) {
+			buffer[--i] = (byte) ('0' + value);
+		}
+		while (i > pos) {
+			buffer[--i] = '0';
+		}
+		
+		return end;
+	}
+	
+	/**
+	 * writePadded() with absolute puts into a buffer, for the '0' zero digit.
+	 */
+	protected static int writePadded(ByteBuffer buffer, int index, int value, int width) {
+		if (value < 0) {
+			buffer.put(index++, (byte) '-');
+			value = -value;
+			width--;
+		}
+		
+		int end = index + Math.max(digitCount(value), width);
+		int i = end;
+		while (value >= 10) {
+			int pair = (value % 100) << 1;
+			value /= 100;
+			buffer.put(--i, (byte) DIGIT_PAIRS[pair + 1]);
+			buffer.put(--i, (byte) DIGIT_PAIRS[pair]);
+		}
+		if (i > index && (value > 0 || i == end)) {
+			buffer.put(--i, (byte) ('0' + value));
+		}
+		while (i > index) {
+			buffer.put(--i, (byte) '0');
+		}
+		
+		return end;
+	}
+	
+	protected static int digitCount(int value) {
+		if (value < 10) return 1;
+		if (value < 100) return 2;
+		if (value < 1000) return 3;
+		if (value < 10000) return 4;
+		
+		int digits = 5;
+		for (value /= 100000; value > 0; value /= 10) {
+			digits++;
+		}
+		return digits;
+	}
+	
+	/**
+	 * Standard and daylight display names of a zone, memoized process-wide 
+	 * since TimeZone.getDisplayName goes to the locale resources each time.
+	 */
+	protected static String[] zoneNames(TimeZone zone, int style, Locale locale) {
+		String key = zone.getID() + '\u0000' + zone.getRawOffset() + '\u0000' + zone.getDSTSavings() + '\u0000' + style + '\u0000' + locale;
+		String[] names = ZONE_NAMES.get(key);
+		
+		if (names == null) {
+			names = new String[] {zone.getDisplayName(false, style, locale), zone.getDisplayName(true, style, locale)};
+			String[] existing = ZONE_NAMES.putIfAbsent(key, names);
+			if (existing != null) {
+				names = existing;
+			}
+		}
+		
+		return names;
+	}
+	
+	/**
+	 * Shared table of rendered offsets for one style and zero digit, indexed 
+	 * by offset minutes + MAX_OFFSET_MINUTES. Entries are filled on first 
+	 * use; a racing thread at worst renders the same immutable String twice.
+	 */
+	protected static String[] offsetTexts(int isoLength, char zero) {
+		String key = isoLength + ":" + zero;
+		String[] texts = OFFSET_TEXTS.get(key);
+		
+		if (texts == null) {
+			texts = new String[2 * MAX_OFFSET_MINUTES + 1];
+			String[] existing = OFFSET_TEXTS.putIfAbsent(key, texts);
+			if (existing != null) {
+				texts = existing;
+			}
+		}
+		
+		return texts;
+	}
+	
+	protected static String renderOffset(int pureMinutes, int isoLength, char zero) {
+		StringBuilder buffer = new StringBuilder(6);
+		buffer.append(pureMinutes < 0 ? '-' : '+');
+		pureMinutes = Math.abs(pureMinutes);
+		
+		int hours = pureMinutes / 60;
+		int minutes = pureMinutes % 60;
+		
+		switch (isoLength) {
+			case 0:
+				appendPadded(buffer, hours * 100 + minutes, 4, zero);
+				break;
+			case 1:
+				appendPadded(buffer, hours, 2, zero);
+				break;
+			case 2:
+				appendPadded(buffer, hours, 2, zero);
+				appendPadded(buffer, minutes, 2, zero);
+				break;
+			default:
+				appendPadded(buffer, hours, 2, zero);
+				buffer.append(':');
+				appendPadded(buffer, minutes, 2, zero);
+		}
+		
+		return buffer.toString();
+	}
+	
+	protected static int writeText(char[] buffer, int pos, String text) {
+		int length = text.length();
+		text.getChars(0, length, buffer, pos);
+		return pos + length;
+	}
+	
+	protected static int writeBytes(byte[] buffer, int pos, byte[] bytes) {
+		System.arraycopy(bytes, 0, buffer, pos, bytes.length);
+		return pos + bytes.length;
+	}
+	
+	/**
+	 * Encodes text as UTF-8 at pos, ASCII chars one byte each; an unpaired 
+	 * surrogate becomes '?', as in String.getBytes().
+	 */
+	protected static int writeUtf8(byte[] buffer, int pos, CharSequence text) {
+		int length = text.length();
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			if (c < 0x80) {
+				buffer[pos++] = (byte) c;
+			}
+			else if (c < 0x800) {
+				buffer[pos++] = (byte) (0xC0 | c >> 6);
+				buffer[pos++] = (byte) (0x80 | c & 0x3F);
+			}
+			else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, text.charAt(++i));
+				buffer[pos++] = (byte) (0xF0 | codePoint >> 18);
+				buffer[pos++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+				buffer[pos++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+				buffer[pos++] = (byte) (0x80 | codePoint & 0x3F);
+			}
+			else if (Character.isSurrogate(c)) {
+				buffer[pos++] = '?';
+			}
+			else {
+				buffer[pos++] = (byte) (0xE0 | c >> 12);
+				buffer[pos++] = (byte) (0x80 | c >> 6 & 0x3F);
+				buffer[pos++] = (byte) (0x80 | c & 0x3F);
+			}
+		}
+		return pos;
+	}
+	
+	protected static int writeBytes(ByteBuffer buffer, int index, byte[] bytes) {
+		buffer.put(index, bytes);
+		return index + bytes.length;
+	}
+	
+	/**
+	 * writeUtf8() with absolute puts into a buffer.
+	 */
+	protected static int writeUtf8(ByteBuffer buffer, int index, CharSequence text) {
+		int length = text.length();
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			if (c < 0x80) {
+				buffer.put(index++, (byte) c);
+			}
+			else if (c < 0x800) {
+				buffer.put(index++, (byte) (0xC0 | c >> 6));
+				buffer.put(index++, (byte) (0x80 | c & 0x3F));
+			}
+			else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, text.charAt(++i));
+				buffer.put(index++, (byte) (0xF0 | codePoint >> 18));
+				buffer.put(index++, (byte) (0x80 | codePoint >> 12 & 0x3F));
+				buffer.put(index++, (byte) (0x80 | codePoint >> 6 & 0x3F));
+				buffer.put(index++, (byte) (0x80 | codePoint & 0x3F));
+			}
+			else if (Character.isSurrogate(c)) {
+				buffer.put(index++, (byte) '?');
+			}
+			else {
+				buffer.put(index++, (byte) (0xE0 | c >> 12));
+				buffer.put(index++, (byte) (0x80 | c >> 6 & 0x3F));
+				buffer.put(index++, (byte) (0x80 | c & 0x3F));
+			}
+		}
+		return index;
+	}
+	
+	protected static byte[][] utf8(String[] names) {
+		byte[][] encoded = new byte[names.length][];
+		for (int i = 0; i < names.length; i++) {
+			encoded[i] = names[i] == null ? new byte[0] : names[i].getBytes(StandardCharsets.UTF_8);
+		}
+		return encoded;
+	}
+	
+	/**
+	 * Everything format() needs from a pattern, published as one immutable
+	 * unit so concurrent callers never see a half-applied pattern.
+	 */
+	protected static final class CompiledPattern {
+		final FieldPrinter[] printers;
+		final boolean usesWeeks;
+		final boolean usesDaylight;
+		final int unit;
+		final FieldPrinter generated;
+		final int maxLength;
+		final int fixedLength;
+		final int[] fixedOffsets;
+		final int[] fixedWidths;
+		
+		CompiledPattern(FieldPrinter[] printers, boolean usesWeeks, boolean usesDaylight, int unit) {
+			this(printers, usesWeeks, usesDaylight, unit, null);
+		}
+		
+		/**
+		 * When every printer has a fixed width, the length of the text and 
+		 * where each printer writes are worked out here, once; fixedLength 
+		 * is -1 otherwise.
+		 */
+		CompiledPattern(FieldPrinter[] printers, boolean usesWeeks, boolean usesDaylight, int unit, FieldPrinter generated) {
+			this.printers = printers;
+			this.usesWeeks = usesWeeks;
+			this.usesDaylight = usesDaylight;
+			this.unit = unit;
+			this.generated = generated;
+			this.fixedOffsets = new int[printers.length];
+			this.fixedWidths = new int[printers.length];
+			
+			int maxLength = 0;
+			int fixedLength = 0;
+			for (int i = 0; i < printers.length; i++) {
+				int width = printers[i].fixedWidth();
+				maxLength += printers[i].maxWidth();
+				fixedOffsets[i] = fixedLength;
+				fixedWidths[i] = width;
+				fixedLength = fixedLength < 0 || width < 0 ? -1 : fixedLength + width;
+			}
+			this.maxLength = maxLength;
+			this.fixedLength = fixedLength;
+		}
+		
+		CompiledPattern withGenerated(FieldPrinter generated) {
+			return new CompiledPattern(printers, usesWeeks, usesDaylight, unit, generated);
+		}
+		
+		void print(int[] fields, StringBuilder buffer) {
+			if (generated != null) {
+				generated.print(fields, buffer);
+				return;
+			}
+			for (FieldPrinter printer : printers) {
+				printer.print(fields, buffer);
+			}
+		}
+		
+		int print(int[] fields, char[] buffer, int pos) {
+			if (generated != null) {
+				return generated.print(fields, buffer, pos);
+			}
+			for (FieldPrinter printer : printers) {
+				pos = printer.print(fields, buffer, pos);
+			}
+			return pos;
+		}
+		
+		/**
+		 * Always through the printer chain: generated classes only print 
+		 * chars.
+		 */
+		int print(int[] fields, byte[] buffer, int pos) {
+			for (FieldPrinter printer : printers) {
+				pos = printer.print(fields, buffer, pos);
+			}
+			return pos;
+		}
+		
+		int print(int[] fields, ByteBuffer buffer, int index) {
+			for (FieldPrinter printer : printers) {
+				index = printer.print(fields, buffer, index);
+			}
+			return index;
+		}
+		
+		/**
+		 * Writes a fixed-width pattern into buffer[pos, pos + fixedLength), 
+		 * which the caller has checked to be in bounds; each printer writes 
+		 * at its own offset.
+		 */
+		void printFixed(int[] fields, char[] buffer, int pos) {
+			if (generated != null) {
+				generated.print(fields, buffer, pos);
+				return;
+			}
+			for (int i = 0; i < printers.length; i++) {
+				printers[i].printFixed(fields, buffer, pos + fixedOffsets[i], fixedWidths[i]);
+			}
+		}
+	}
+	
+	/**
+	 * Rendered text together with the epoch interval [validFrom, validUntil) 
+	 * over which it does not change.
+	 */
+	protected static final class BoundarySnapshot {
+		final CompiledPattern compiled;
+		final String text;
+		final long validFrom;
+		final long validUntil;
+		
+		BoundarySnapshot(CompiledPattern compiled, String text, long validFrom, long validUntil) {
+			this.compiled = compiled;
+			this.text = text;
+			this.validFrom = validFrom;
+			this.validUntil = validUntil;
+		}
+	}
+	
+	/**
+	 * Local times [localFrom, localUntil) and the offset and DST flag they 
+	 * all share.
+	 */
+	protected static final class WallInterval {
+		final long localFrom;
+		final long localUntil;
+		final int offset;
+		final boolean daylight;
+		
+		WallInterval(long localFrom, long localUntil, int offset, boolean daylight) {
+			this.localFrom = localFrom;
+			this.localUntil = localUntil;
+			this.offset = offset;
+			this.daylight = daylight;
+		}
+	}
+	
+	/**
+	 * The rendered text of one second, with the positions where the 
+	 * millisecond printers go.
+	 */
+	protected static final class SecondSnapshot {
+		final CompiledPattern compiled;
+		final long epochSecond;
+		final char[] text;
+		final int[] splits;
+		final NumberPrinter[] millisPrinters;
+		final byte[][] utf8;
+		
+		/**
+		 * The text between the milliseconds is also encoded to UTF-8 here, 
+		 * once, for the byte flavours of writeTo().
+		 */
+		SecondSnapshot(CompiledPattern compiled, long epochSecond, char[] text, List<Integer> splits, List<NumberPrinter> millisPrinters) {
+			this.compiled = compiled;
+			this.epochSecond = epochSecond;
+			this.text = text;
+			this.splits = new int[splits.size()];
+			this.utf8 = new byte[this.splits.length + 1][];
+			int start = 0;
+			for (int i = 0; i < this.splits.length; i++) {
+				this.splits[i] = splits.get(i);
+				this.utf8[i] = new String(text, start, this.splits[i] - start).getBytes(StandardCharsets.UTF_8);
+				start = this.splits[i];
+			}
+			this.utf8[this.splits.length] = new String(text, start, text.length - start).getBytes(StandardCharsets.UTF_8);
+			this.millisPrinters = millisPrinters.toArray(new NumberPrinter[millisPrinters.size()]);
+		}
+		
+		/**
+		 * The most chars writeTo() writes for any millisecond.
+		 */
+		int maxLength() {
+			int length = text.length;
+			for (NumberPrinter printer : millisPrinters) {
+				length += printer.maxWidth();
+			}
+			return length;
+		}
+		
+		int appendTo(StringBuilder buffer, int millis) {
+			int start = 0;
+			for (int i = 0; i < splits.length; i++) {
+				buffer.append(text, start, splits[i] - start);
+				NumberPrinter printer = millisPrinters[i];
+				appendPadded(buffer, millis, printer.width, printer.zero);
+				start = splits[i];
+			}
+			buffer.append(text, start, text.length - start);
+			return buffer.length();
+		}
+		
+		int writeTo(char[] buffer, int pos, int millis) {
+			int start = 0;
+			for (int i = 0; i < splits.length; i++) {
+				System.arraycopy(text, start, buffer, pos, splits[i] - start);
+				pos += splits[i] - start;
+				NumberPrinter printer = millisPrinters[i];
+				pos = writePadded(buffer, pos, millis, printer.width, printer.zero);
+				start = splits[i];
+			}
+			System.arraycopy(text, start, buffer, pos, text.length - start);
+			return pos + text.length - start;
+		}
+		
+		int writeTo(byte[] buffer, int pos, int millis) {
+			for (int i = 0; i < splits.length; i++) {
+				pos = writeBytes(buffer, pos, utf8[i]);
+				NumberPrinter printer = millisPrinters[i];
+				if (printer.zero == '0') {
+					pos = writePadded(buffer, pos, millis, printer.width);
+				}
+				else {
+					StringBuilder digits = new StringBuilder();
+					appendPadded(digits, millis, printer.width, printer.zero);
+					pos = writeUtf8(buffer, pos, digits);
+				}
+			}
+			return writeBytes(buffer, pos, utf8[splits.length]);
+		}
+		
+		int writeTo(ByteBuffer buffer, int index, int millis) {
+			for (int i = 0; i < splits.length; i++) {
+				index = writeBytes(buffer, index, utf8[i]);
+				NumberPrinter printer = millisPrinters[i];
+				if (printer.zero == '0') {
+					index = writePadded(buffer, index, millis, printer.width);
+				}
+				else {
+					StringBuilder digits = new StringBuilder();
+					appendPadded(digits, millis, printer.width, printer.zero);
+					index = writeUtf8(buffer, index, digits);
+				}
+			}
+			return writeBytes(buffer, index, utf8[splits.length]);
+		}
+	}
+	
+	/**
+	 * The chunks [chunkFrom, chunkTo) of a formatParallel() call, split in 
+	 * halves down to one chunk per task. Without a result array, formats 
+	 * each chunk into texts; with one, copies each chunk into it at its 
+	 * base and shifts its offsets.
+	 */
+	protected class BatchTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		
+		final long[] epochs;
+		final int from;
+		final int to;
+		final int[] offsets;
+		final char[][] texts;
+		final int[] bases;
+		final char[] text;
+		final int chunkFrom;
+		final int chunkTo;
+		
+		BatchTask(long[] epochs, int from, int to, int[] offsets, char[][] texts, int[] bases, char[] text, int chunkFrom, int chunkTo) {
+			this.epochs = epochs;
+			this.from = from;
+			this.to = to;
+			this.offsets = offsets;
+			this.texts = texts;
+			this.bases = bases;
+			this.text = text;
+			this.chunkFrom = chunkFrom;
+			this.chunkTo = chunkTo;
+		}
+		
+		@Override
+		protected void compute() {
+			if (chunkTo - chunkFrom > 1) {
+				int middle = (chunkFrom + chunkTo) >>> 1;
+				invokeAll(new BatchTask(epochs, from, to, offsets, texts, bases, text, chunkFrom, middle), 
+						new BatchTask(epochs, from, to, offsets, texts, bases, text, middle, chunkTo));
+				return;
+			}
+			
+			int first = chunkFrom * PARALLEL_CHUNK;
+			int last = Math.min(first + PARALLEL_CHUNK, to - from);
+			
+			if (text == null) {
+				texts[chunkFrom] = formatBatch(epochs, from + first, from + last, offsets, first);
+				return;
+			}
+			
+			int base = bases[chunkFrom];
+			System.arraycopy(texts[chunkFrom], 0, text, base, offsets[last]);
+			texts[chunkFrom] = null;
+			for (int i = first + 1; i <= last; i++) {
+				offsets[i] += base;
+			}
+		}
+	}
+	
+	/**
+	 * Result of formatBatch(): the formatted values back to back in one 
+	 * array, value i spanning [getStart(i), getEnd(i)) of getText().
+	 */
+	public static final class Batch {
+		private final char[] text;
+		private final int[] offsets;
+		
+		Batch(char[] text, int[] offsets) {
+			this.text = text;
+			this.offsets = offsets;
+		}
+		
+		public int size() {
+			return offsets.length - 1;
+		}
+		
+		/**
+		 * The shared text array itself, not a copy.
+		 */
+		public char[] getText() {
+			return text;
+		}
+		
+		/**
+		 * The size() + 1 offsets into getText(), starting at 0; not a copy.
+		 */
+		public int[] getOffsets() {
+			return offsets;
+		}
+		
+		public int getStart(int index) {
+			return offsets[index];
+		}
+		
+		public int getEnd(int index) {
+			return offsets[index + 1];
+		}
+		
+		public String get(int index) {
+			return new String(text, offsets[index], offsets[index + 1] - offsets[index]);
+		}
+	}
+	
+	/**
+	 * Process-wide, read-only text symbols of a locale. DateFormatSymbols 
+	 * hands out a fresh clone of an array on every getter call; these are 
+	 * copied once per locale and then shared by every formatter, so a text 
+	 * field is a plain array index. The arrays must never be modified.
+	 */
+	protected static final class SymbolTable {
+		private static final ConcurrentMap<Locale, SymbolTable> TABLES = new ConcurrentHashMap<Locale, SymbolTable>();
+		
+		final Locale locale;
+		final String[] eras;
+		final String[] months;
+		final String[] shortMonths;
+		final String[] weekdays;
+		final String[] shortWeekdays;
+		final String[] amPmStrings;
+		
+		/*
+		 * The same names, encoded once as UTF-8 for byte output.
+		 */
+		final byte[][] erasUtf8;
+		final byte[][] monthsUtf8;
+		final byte[][] shortMonthsUtf8;
+		final byte[][] weekdaysUtf8;
+		final byte[][] shortWeekdaysUtf8;
+		final byte[][] amPmUtf8;
+		
+		private SymbolTable(Locale locale) {
+			DateFormatSymbols dfs = DateFormatSymbols.getInstance(locale);
+			this.locale = locale;
+			this.eras = dfs.getEras();
+			this.months = oneBased(dfs.getMonths());
+			this.shortMonths = oneBased(dfs.getShortMonths());
+			this.weekdays = dfs.getWeekdays();
+			this.shortWeekdays = dfs.getShortWeekdays();
+			this.amPmStrings = dfs.getAmPmStrings();
+			this.erasUtf8 = utf8(eras);
+			this.monthsUtf8 = utf8(months);
+			this.shortMonthsUtf8 = utf8(shortMonths);
+			this.weekdaysUtf8 = utf8(weekdays);
+			this.shortWeekdaysUtf8 = utf8(shortWeekdays);
+			this.amPmUtf8 = utf8(amPmStrings);
+		}
+		
+		/*
+		 * Name tries for parsing, built on first use; a racing thread at 
+		 * worst builds an identical trie.
+		 */
+		private volatile NameTrie eraTrie;
+		private volatile NameTrie monthTrie;
+		private volatile NameTrie weekdayTrie;
+		private volatile NameTrie amPmTrie;
+		
+		NameTrie eraTrie() {
+			NameTrie trie = eraTrie;
+			if (trie == null) {
+				eraTrie = trie = new NameTrie().putAll(eras, 0);
+			}
+			return trie;
+		}
+		
+		/**
+		 * Long and short month names, as SimpleDateFormat accepts either.
+		 */
+		NameTrie monthTrie() {
+			NameTrie trie = monthTrie;
+			if (trie == null) {
+				monthTrie = trie = new NameTrie().putAll(months, 0).putAll(shortMonths, 0);
+			}
+			return trie;
+		}
+		
+		NameTrie weekdayTrie() {
+			NameTrie trie = weekdayTrie;
+			if (trie == null) {
+				weekdayTrie = trie = new NameTrie().putAll(weekdays, 0).putAll(shortWeekdays, 0);
+			}
+			return trie;
+		}
+		
+		NameTrie amPmTrie() {
+			NameTrie trie = amPmTrie;
+			if (trie == null) {
+				amPmTrie = trie = new NameTrie().putAll(amPmStrings, 0);
+			}
+			return trie;
+		}
+		
+		static SymbolTable forLocale(Locale locale) {
+			SymbolTable table = TABLES.get(locale);
+			if (table == null) {
+				SymbolTable created = new SymbolTable(locale);
+				table = TABLES.putIfAbsent(locale, created);
+				if (table == null) {
+					table = created;
+				}
+			}
+			return table;
+		}
+		
+		/**
+		 * DateFormatSymbols month arrays are zero-based, unlike the weekday
+		 * ones; shifting them lets every text printer index by field value.
+		 */
+		private static String[] oneBased(String[] names) {
+			String[] shifted = new String[names.length + 1];
+			System.arraycopy(names, 0, shifted, 1, names.length);
+			return shifted;
+		}
+	}
+	
+	protected static abstract class FieldPrinter {
+		abstract void print(int[] fields, StringBuilder buffer);
+		
+		abstract int print(int[] fields, char[] buffer, int pos);
+		
+		/**
+		 * UTF-8 flavour of print(); this fallback encodes what the char 
+		 * flavour renders.
+		 */
+		int print(int[] fields, byte[] buffer, int pos) {
+			StringBuilder text = new StringBuilder();
+			print(fields, text);
+			return writeUtf8(buffer, pos, text);
+		}
+		
+		/**
+		 * The byte[] flavour with absolute puts into a buffer.
+		 */
+		int print(int[] fields, ByteBuffer buffer, int index) {
+			StringBuilder text = new StringBuilder();
+			print(fields, text);
+			return writeUtf8(buffer, index, text);
+		}
+		
+		/**
+		 * Chars printed for every instant of the fixed-width range, or -1 
+		 * when that depends on the instant.
+		 */
+		int fixedWidth() {
+			return -1;
+		}
+		
+		/**
+		 * The most chars printed for any instant.
+		 */
+		int maxWidth() {
+			return 0;
+		}
+		
+		/**
+		 * Prints exactly width (= fixedWidth()) chars at pos.
+		 */
+		void printFixed(int[] fields, char[] buffer, int pos, int width) {
+			print(fields, buffer, pos);
+		}
+		
+		/**
+		 * Bits (1 << FIELD_*) of the fields the output depends on; all of 
+		 * them unless a printer knows better.
+		 */
+		int fieldMask() {
+			return ~0;
+		}
+	}
+	
+	protected static class LiteralPrinter extends FieldPrinter {
+		final String text;
+		final byte[] utf8;
+		
+		LiteralPrinter(String text) {
+			this.text = text;
+			this.utf8 = text.getBytes(StandardCharsets.UTF_8);
+		}
+		
+		@Override
+		int print(int[] fields, byte[] buffer, int pos) {
+			return writeBytes(buffer, pos, utf8);
+		}
+		
+		@Override
+		int print(int[] fields, ByteBuffer buffer, int index) {
+			return writeBytes(buffer, index, utf8);
+		}
+		
+		@Override
+		int fieldMask() {
+			return 0;
+		}
+		
+		@Override
+		int fixedWidth() {
+			return text.length();
+		}
+		
+		@Override
+		int maxWidth() {
+			return text.length();
+		}
+		
+		@Override
+		void print(int[] fields, StringBuilder buffer) {
+			buffer.append(text);
+		}
+		
+		@Override
+		int print(int[] fields, char[] buffer, int pos) {
+			return writeText(buffer, pos, text);
+		}
+	}
+	
+	protected static class NumberPrinter extends FieldPrinter {
+		final int field;
+		final int width;
+		final char zero;
+		
+		NumberPrinter(int field, int width, char zero) {
+			this.field = field;
+			this.width = width;
+			this.zero = zero;
+		}
+		
+		int value(int[] fields) {
+			return fields[field];
+		}
+		
+		@Override
+		int fieldMask() {
+			return 1 << field;
+		}
+		
+		@Override
+		void print(int[] fields, StringBuilder buffer) {
+			appendPadded(buffer, value(fields), width, zero);
+		}
+		
+		@Override
+		int print(int[] fields, char[] buffer, int pos) {
+			return writePadded(buffer, pos, value(fields), width, zero);
+		}
+		
+		@Override
+		int print(int[] fields, byte[] buffer, int pos) {
+			if (zero != '0') {
+				return super.print(fields, buffer, pos);
+			}
+			return writePadded(buffer, pos, value(fields), width);
+		}
+		
+		@Override
+		int print(int[] fields, ByteBuffer buffer, int index) {
+			if (zero != '0') {
+				return super.print(fields, buffer, index);
+			}
+			return writePadded(buffer, index, value(fields), width);
+		}
+		
+		/**
+		 * Padding to at least the most digits the field can have makes the 
+		 * width fixed; so does a field that always has the same number of 
+		 * digits (years, within the fixed-width range).
+		 */
+		@Override
+		int fixedWidth() {
+			int maxDigits = FIXED_MAX_FIELD_DIGITS[field];
+			if (width >= maxDigits) {
+				return width;
+			}
+			return FIXED_MIN_FIELD_DIGITS[field] == maxDigits ? maxDigits : -1;
+		}
+		
+		@Override
+		int maxWidth() {
+			return Math.max(width, MAX_FIELD_DIGITS[field]) + signWidth();
+		}
+		
+		/**
+		 * Room for the '-' of a field that can be negative.
+		 */
+		int signWidth() {
+			return (SIGNED_FIELDS & (1 << field)) != 0 ? 1 : 0;
+		}
+		
+		@Override
+		void printFixed(int[] fields, char[] buffer, int pos, int width) {
+			int value = value(fields);
+			int shift = zero - '0';
+			int i = pos + width;
+			for (; i - pos >= 2; value /= 100) {
+				int pair = (value % 100) << 1;
+				buffer[--i] = (char) (DIGIT_PAIRS[pair + 1] + shift);
+				buffer[--i] = (char) (DIGIT_PAIRS[pair] + shift);
+			}
+			if (i > pos) {
+				buffer[--i] = (char) (zero + value % 10);
+			}
+		}
+	}
+	
+	protected static class ReducedNumberPrinter extends NumberPrinter {
+		final int modulus;
+		
+		ReducedNumberPrinter(int field, int width, char zero, int modulus) {
+			super(field, width, zero);
+			this.modulus = modulus;
+		}
+		
+		@Override
+		int value(int[] fields) {
+			return fields[field] % modulus;
+		}
+		
+		@Override
+		int fixedWidth() {
+			return width >= digitCount(modulus - 1) ? width : -1;
+		}
+		
+		@Override
+		int maxWidth() {
+			return Math.max(width, digitCount(modulus - 1)) + signWidth();
+		}
+	}
+	
+	protected static class TextPrinter extends FieldPrinter {
+		final int field;
+		final String[] names;
+		final byte[][] utf8;
+		
+		TextPrinter(int field, String[] names, byte[][] utf8) {
+			this.field = field;
+			this.names = names;
+			this.utf8 = utf8;
+		}
+		
+		@Override
+		int print(int[] fields, byte[] buffer, int pos) {
+			return writeBytes(buffer, pos, utf8[fields[field]]);
+		}
+		
+		@Override
+		int print(int[] fields, ByteBuffer buffer, int index) {
+			return writeBytes(buffer, index, utf8[fields[field]]);
+		}
+		
+		@Override
+		int fieldMask() {
+			return 1 << field;
+		}
+		
+		/**
+		 * Missing or empty names, like the unused first weekday, are never 
+		 * printed.
+		 */
+		@Override
+		int fixedWidth() {
+			int width = -1;
+			for (String name : names) {
+				if (name == null || name.length() == 0) {
+					continue;
+				}
+				if (width >= 0 && name.length() != width) {
+					return -1;
+				}
+				width = name.length();
+			}
+			return width;
+		}
+		
+		@Override
+		int maxWidth() {
+			int width = 0;
+			for (String name : names) {
+				width = Math.max(width, name == null ? 0 : name.length());
+			}
+			return width;
+		}
+		
+		@Override
+		void print(int[] fields, StringBuilder buffer) {
+			buffer.append(names[fields[field]]);
+		}
+		
+		@Override
+		int print(int[] fields, char[] buffer, int pos) {
+			return writeText(buffer, pos, names[fields[field]]);
+		}
+	}
+	
+	protected static class OrdinalPrinter extends FieldPrinter {
+		final int field;
+		
+		OrdinalPrinter(int field) {
+			this.field = field;
+		}
+		
+		@Override
+		int fixedWidth() {
+			return 2;
+		}
+		
+		@Override
+		int maxWidth() {
+			return 2;
+		}
+		
+		@Override
+		void print(int[] fields, StringBuilder buffer) {
+			buffer.append(ordinalSuffix(fields[field]));
+		}
+		
+		@Override
+		int print(int[] fields, char[] buffer, int pos) {
+			return writeText(buffer, pos, ordinalSuffix(fields[field]));
+		}
+		
+		@Override
+		int print(int[] fields, byte[] buffer, int pos) {
+			return writeUtf8(buffer, pos, ordinalSuffix(fields[field]));
+		}
+		
+		@Override
+		int print(int[] fields, ByteBuffer buffer, int index) {
+			return writeUtf8(buffer, index, ordinalSuffix(fields[field]));
+		}
+		
+		@Override
+		int fieldMask() {
+			return 1 << field;
+		}
+	}
+	
+	/**
+	 * Prints 'z'; both display names are looked up once, at compile time.
+	 */
+	protected static class ZoneNamePrinter extends FieldPrinter {
+		final String standardName;
+		final String daylightName;
+		final byte[][] utf8;
+		
+		ZoneNamePrinter(String[] names) {
+			this.standardName = names[0];
+			this.daylightName = names[1];
+			this.utf8 = utf8(names);
+		}
+		
+		@Override
+		int print(int[] fields, byte[] buffer, int pos) {
+			return writeBytes(buffer, pos, utf8[fields[FIELD_DAYLIGHT] != 0 ? 1 : 0]);
+		}
+		
+		@Override
+		int print(int[] fields, ByteBuffer buffer, int index) {
+			return writeBytes(buffer, index, utf8[fields[FIELD_DAYLIGHT] != 0 ? 1 : 0]);
+		}
+		
+		@Override
+		int fieldMask() {
+			return 1 << FIELD_DAYLIGHT;
+		}
+		
+		@Override
+		int fixedWidth() {
+			return standardName.length() == daylightName.length() ? standardName.length() : -1;
+		}
+		
+		@Override
+		int maxWidth() {
+			return Math.max(standardName.length(), daylightName.length());
+		}
+		
+		@Override
+		void print(int[] fields, StringBuilder buffer) {
+			buffer.append(fields[FIELD_DAYLIGHT] != 0 ? daylightName : standardName);
+		}
+		
+		@Override
+		int print(int[] fields, char[] buffer, int pos) {
+			return writeText(buffer, pos, fields[FIELD_DAYLIGHT] != 0 ? daylightName : standardName);
+		}
+	}
+	
+	/**
+	 * Prints 'Z' (length 0, RFC 822) or 'X', 'XX', 'XXX' (ISO 8601) from 
+	 * the shared table of rendered offsets.
+	 */
+	protected static class ZoneOffsetPrinter extends FieldPrinter {
+		final int isoLength;
+		final char zero;
+		final String[] texts;
+		
+		ZoneOffsetPrinter(int isoLength, char zero) {
+			this.isoLength = isoLength;
+			this.zero = zero;
+			this.texts = offsetTexts(isoLength, zero);
+		}
+		
+		/**
+		 * Sign and two-digit hours, then minutes as renderOffset() adds them.
+		 */
+		@Override
+		int fixedWidth() {
+			return isoLength == 1 ? 3 : isoLength == 3 ? 6 : 5;
+		}
+		
+		@Override
+		int maxWidth() {
+			return fixedWidth();
+		}
+		
+		String text(int offsetMillis) {
+			int pureMinutes = offsetMillis / 60000;
+			int index = pureMinutes + MAX_OFFSET_MINUTES;
+			
+			if (index < 0 || index >= texts.length) {
+				return renderOffset(pureMinutes, isoLength, zero);
+			}
+			
+			String text = texts[index];
+			if (text == null) {
+				text = renderOffset(pureMinutes, isoLength, zero);
+				texts[index] = text;
+			}
+			return text;
+		}
+		
+		@Override
+		void print(int[] fields, StringBuilder buffer) {
+			buffer.append(text(fields[FIELD_ZONE_OFFSET]));
+		}
+		
+		@Override
+		int print(int[] fields, char[] buffer, int pos) {
+			return writeText(buffer, pos, text(fields[FIELD_ZONE_OFFSET]));
+		}
+		
+		@Override
+		int print(int[] fields, byte[] buffer, int pos) {
+			return writeUtf8(buffer, pos, text(fields[FIELD_ZONE_OFFSET]));
+		}
+		
+		@Override
+		int print(int[] fields, ByteBuffer buffer, int index) {
+			return writeUtf8(buffer, index, text(fields[FIELD_ZONE_OFFSET]));
+		}
+		
+		@Override
+		int fieldMask() {
+			return 1 << FIELD_ZONE_OFFSET;
+		}
+	}
+	
+	/**
+	 * Case-insensitive prefix tree of names, each mapped to a field value; 
+	 * match() returns the longest name found at the position, so "June" 
+	 * wins over "Jun" without trying every name in turn.
+	 */
+	protected static final class NameTrie {
+		private char[] keys = new char[0];
+		private NameTrie[] children = new NameTrie[0];
+		private int value = -1;
+		
+		/**
+		 * Adds names[i] for value i + offset; empty or missing names, like 
+		 * the unused first weekday, are skipped. An earlier value is kept 
+		 * when two names collide.
+		 */
+		NameTrie putAll(String[] names, int offset) {
+			for (int i = 0; i < names.length; i++) {
+				if (names[i] != null && names[i].length() > 0) {
+					put(names[i], i + offset);
+				}
+			}
+			return this;
+		}
+		
+		void put(String name, int value) {
+			NameTrie node = this;
+			for (int i = 0; i < name.length(); i++) {
+				node = node.child(fold(name.charAt(i)), true);
+			}
+			if (node.value < 0) {
+				node.value = value;
+			}
+		}
+		
+		private NameTrie child(char key, boolean create) {
+			for (int i = 0; i < keys.length; i++) {
+				if (keys[i] == key) {
+					return children[i];
+				}
+			}
+			if (!create) {
+				return null;
+			}
+			NameTrie child = new NameTrie();
+			keys = Arrays.copyOf(keys, keys.length + 1);
+			children = Arrays.copyOf(children, children.length + 1);
+			keys[keys.length - 1] = key;
+			children[children.length - 1] = child;
+			return child;
+		}
+		
+		static char fold(char c) {
+			return Character.toLowerCase(Character.toUpperCase(c));
+		}
+		
+		/**
+		 * Stores the value of the longest name at text[pos, end) in 
+		 * fields[field]; returns the position after it, or ~pos.
+		 */
+		int match(CharSequence text, int pos, int end, int[] fields, int field) {
+			NameTrie node = this;
+			int matchedValue = -1;
+			int matchedEnd = -1;
+			
+			for (int i = pos; i < end; i++) {
+				node = node.child(fold(text.charAt(i)), false);
+				if (node == null) {
+					break;
+				}
+				if (node.value >= 0) {
+					matchedValue = node.value;
+					matchedEnd = i + 1;
+				}
+			}
+			
+			if (matchedEnd < 0) {
+				return ~pos;
+			}
+			setField(fields, field, matchedValue);
+			return matchedEnd;
+		}
+	}
+	
+	protected static void setField(int[] fields, int field, int value) {
+		fields[field] = value;
+		fields[PARSED_FIELDS] |= 1 << field;
+	}
+	
+	/**
+	 * The parser chain of a pattern, whether parseToEpochMillis() may 
+	 * resolve it arithmetically, how the zone maps local times (see 
+	 * localToEpochMillis()), and the two-digit year window.
+	 */
+	protected static final class ParsePlan {
+		final FieldParser[] parsers;
+		final FixedLayout layout;
+		final boolean arithmetic;
+		final boolean wallTimeZone;
+		final long centuryStartMillis;
+		
+		ParsePlan(FieldParser[] parsers, FixedLayout layout, boolean arithmetic, TimeZone zone) {
+			this.parsers = parsers;
+			this.layout = layout;
+			this.arithmetic = arithmetic;
+			this.wallTimeZone = "sun.util.calendar.ZoneInfo".equals(zone.getClass().getName());
+			long centuryStartMillis = Long.MIN_VALUE;
+			for (FieldParser parser : parsers) {
+				if (parser instanceof YearParser && ((YearParser) parser).centuryStartYear >= 0) {
+					centuryStartMillis = ((YearParser) parser).centuryStartMillis;
+				}
+			}
+			this.centuryStartMillis = centuryStartMillis;
+		}
+	}
+	
+	/**
+	 * Text of a fixed-width numeric pattern: the literals at fixed offsets 
+	 * and each number exactly as wide as in the pattern. The text is read 
+	 * SWAR-style, eight chars per long, one per byte: each word is checked 
+	 * against the literals and for ASCII digits with a handful of 
+	 * word-wide operations, and each number is then converted from the 
+	 * eight bytes ending at its last digit with three multiplications, 
+	 * rather than digit by digit. Any other text, like numbers written 
+	 * with a localized zero digit, is rejected and left to the parser chain.
+	 */
+	protected static final class FixedLayout {
+		static final int MAX_WIDTH = 8;
+		static final long ZEROS = 0x3030303030303030L;
+		static final long HIGH_NIBBLES = 0xF0F0F0F0F0F0F0F0L;
+		private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+		
+		final int length;
+		final boolean ascii;
+		final long[] templates;
+		final long[] digitMasks;
+		final NumberParser[] numbers;
+		final int[] ends;
+		final int[] widths;
+		final long[] padMasks;
+		
+		/*
+		 * Word 0 stands for eight '0's before the text, so that every number 
+		 * has eight bytes to be read from; the text starts at word 1.
+		 */
+		FixedLayout(String template, List<NumberParser> numbers, List<Integer> offsets, List<Integer> widths) {
+			this.length = template.length();
+			this.numbers = numbers.toArray(new NumberParser[numbers.size()]);
+			this.ends = new int[numbers.size()];
+			this.widths = new int[numbers.size()];
+			this.padMasks = new long[numbers.size()];
+			this.templates = new long[2 + (length - 1) / 8];
+			this.digitMasks = new long[templates.length];
+			
+			for (int i = 0; i < this.numbers.length; i++) {
+				int width = widths.get(i);
+				this.widths[i] = width;
+				this.ends[i] = 8 + offsets.get(i) + width;
+				this.padMasks[i] = width == 8 ? 0 : (1L << ((8 - width) << 3)) - 1;
+				for (int j = offsets.get(i); j < offsets.get(i) + width; j++) {
+					digitMasks[1 + j / 8] |= 0xFFL << ((j & 7) << 3);
+				}
+			}
+			boolean ascii = true;
+			for (int j = 0; j < length; j++) {
+				templates[1 + j / 8] |= (long) (template.charAt(j) & 0xFF) << ((j & 7) << 3);
+				ascii &= template.charAt(j) < 0x80;
+			}
+			this.ascii = ascii;
+		}
+		
+		/**
+		 * Reads text[pos, pos + length) into fields; false, with fields 
+		 * untouched, if the text does not fit the layout.
+		 */
+		boolean parse(CharSequence text, int pos, int[] fields) {
+			long[] words = new long[templates.length];
+			words[0] = ZEROS;
+			int high = 0;
+			
+			int i = 0;
+			int w = 1;
+			for (; i + 8 <= length; i += 8, w++) {
+				long word = 0;
+				for (int j = 0; j < 8; j++) {
+					char c = text.charAt(pos + i + j);
+					high |= c;
+					word |= (long) c << (j << 3);
+				}
+				words[w] = word;
+			}
+			if (i < length) {
+				long word = 0;
+				for (int j = 0; i + j < length; j++) {
+					char c = text.charAt(pos + i + j);
+					high |= c;
+					word |= (long) c << (j << 3);
+				}
+				words[w] = word;
+			}
+			return high <= 0xFF && read(words, fields);
+		}
+		
+		/**
+		 * parse() for ASCII or UTF-8 bytes, loaded eight at a time.
+		 */
+		boolean parse(byte[] text, int pos, int[] fields) {
+			if (!ascii) {
+				return false;
+			}
+			
+			long[] words = new long[templates.length];
+			words[0] = ZEROS;
+			
+			int i = 0;
+			int w = 1;
+			for (; i + 8 <= length; i += 8, w++) {
+				words[w] = (long) LONGS.get(text, pos + i);
+			}
+			if (i < length) {
+				long word = 0;
+				for (int j = 0; i + j < length; j++) {
+					word |= (text[pos + i + j] & 0xFFL) << (j << 3);
+				}
+				words[w] = word;
+			}
+			return read(words, fields);
+		}
+		
+		/**
+		 * Checks the packed text, word 0 aside, then converts its numbers.
+		 */
+		private boolean read(long[] words, int[] fields) {
+			for (int w = 1; w < words.length; w++) {
+				long mask = digitMasks[w];
+				long word = words[w];
+				// literals as in the template, digits '0' to '9'; other bytes are read as '0'
+				long digits = (word & mask) | (ZEROS & ~mask);
+				if (((word ^ templates[w]) & ~mask) != 0 
+						|| ((digits & HIGH_NIBBLES) | (((digits + 0x0606060606060606L) & HIGH_NIBBLES) >>> 4)) != 0x3333333333333333L) {
+					return false;
+				}
+				words[w] = digits;
+			}
+			
+			for (int i = 0; i < numbers.length; i++) {
+				int end = ends[i];
+				int shift = (end & 7) << 3;
+				long chunk = shift == 0 ? words[(end >>> 3) - 1] : (words[end >>> 3] << (64 - shift)) | (words[(end >>> 3) - 1] >>> shift);
+				long pad = padMasks[i];
+				chunk = (chunk & ~pad) | (ZEROS & pad);
+				
+				NumberParser number = numbers[i];
+				setField(fields, number.field, number.adjust(digitsValue(chunk), widths[i], fields));
+			}
+			return true;
+		}
+		
+		/**
+		 * The number written by 8 ASCII digits, most significant first, 
+		 * one per byte from the lowest one.
+		 */
+		static int digitsValue(long chunk) {
+			long value = chunk - ZEROS;
+			value = value * 10 + (value >>> 8);
+			value = (((value & 0x000000FF000000FFL) * (100 + (1000000L << 32))) 
+					+ (((value >>> 16) & 0x000000FF000000FFL) * (1 + (10000L << 32)))) >>> 32;
+			return (int) value;
+		}
+	}
+	
+	/**
+	 * One token of the parser chain. parse() reads from text[pos, end) into 
+	 * fields and returns the position after what it read or, on failure, 
+	 * ~errorIndex; field is the slot it fills, or -1. Parsers that read 
+	 * the same way are equal, which lets MultiPatternParser share them.
+	 */
+	protected static abstract class FieldParser {
+		final int field;
+		
+		FieldParser(int field) {
+			this.field = field;
+		}
+		
+		abstract int parse(CharSequence text, int pos, int end, int[] fields);
+		
+		@Override
+		public boolean equals(Object other) {
+			return other != null && other.getClass() == getClass() && ((FieldParser) other).field == field;
+		}
+		
+		@Override
+		public int hashCode() {
+			return getClass().hashCode() * 31 + field;
+		}
+	}
+	
+	protected static class LiteralParser extends FieldParser {
+		final String text;
+		
+		LiteralParser(String text) {
+			super(-1);
+			this.text = text;
+		}
+		
+		@Override
+		public boolean equals(Object other) {
+			return super.equals(other) && ((LiteralParser) other).text.equals(text);
+		}
+		
+		@Override
+		public int hashCode() {
+			return text.hashCode();
+		}
+		
+		@Override
+		int parse(CharSequence input, int pos, int end, int[] fields) {
+			int length = text.length();
+			for (int i = 0; i < length; i++) {
+				if (pos + i >= end || input.charAt(pos + i) != text.charAt(i)) {
+					return ~(pos + i);
+				}
+			}
+			return pos + length;
+		}
+	}
+	
+	/**
+	 * Reads exactly width digits, or 1 to MAX_PARSED_DIGITS of them when 
+	 * width is 0. Any Unicode decimal digit is accepted, so text printed 
+	 * with a localized zero digit parses back.
+	 */
+	protected static class NumberParser extends FieldParser {
+		final int width;
+		
+		NumberParser(int field, int width) {
+			super(field);
+			this.width = width;
+		}
+		
+		@Override
+		public boolean equals(Object other) {
+			return super.equals(other) && ((NumberParser) other).width == width;
+		}
+		
+		@Override
+		int parse(CharSequence text, int pos, int end, int[] fields) {
+			int limit = Math.min(end, pos + (width > 0 ? width : MAX_PARSED_DIGITS));
+			int value = 0;
+			int i = pos;
+			
+			for (; i < limit; i++) {
+				int digit = Character.digit(text.charAt(i), 10);
+				if (digit < 0) {
+					break;
+				}
+				value = value * 10 + digit;
+			}
+			
+			if (i == pos || (width > 0 && i != pos + width)) {
+				return ~i;
+			}
+			setField(fields, field, adjust(value, i - pos, fields));
+			return i;
+		}
+		
+		int adjust(int value, int digits, int[] fields) {
+			return value;
+		}
+	}
+	
+	/**
+	 * 'y'/'yy' (and 'Y'/'YY') read as exactly two digits are placed in the 
+	 * hundred years starting 80 years before the parser was built, as 
+	 * SimpleDateFormat does. Within the starting year itself only the full 
+	 * date can tell, so resolveFields() finishes the job.
+	 */
+	protected static class YearParser extends NumberParser {
+		final int centuryStartYear;
+		final long centuryStartMillis;
+		
+		YearParser(int field, int width, Calendar centuryStart) {
+			super(field, width);
+			this.centuryStartYear = centuryStart == null ? -1 : centuryStart.get(Calendar.YEAR);
+			this.centuryStartMillis = centuryStart == null ? Long.MIN_VALUE : centuryStart.getTimeInMillis();
+		}
+		
+		@Override
+		public boolean equals(Object other) {
+			return super.equals(other) && ((YearParser) other).centuryStartYear == centuryStartYear;
+		}
+		
+		@Override
+		int adjust(int value, int digits, int[] fields) {
+			if (centuryStartYear < 0 || digits != 2) {
+				return value;
+			}
+			int year = centuryStartYear - centuryStartYear % 100 + value;
+			if (year == centuryStartYear) {
+				fields[PARSED_FIELDS] |= PARSED_AMBIGUOUS_YEAR;
+			}
+			return year < centuryStartYear ? year + 100 : year;
+		}
+	}
+	
+	protected static class NameParser extends FieldParser {
+		final NameTrie trie;
+		
+		NameParser(int field, NameTrie trie) {
+			super(field);
+			this.trie = trie;
+		}
+		
+		@Override
+		public boolean equals(Object other) {
+			return super.equals(other) && ((NameParser) other).trie == trie;
+		}
+		
+		@Override
+		int parse(CharSequence text, int pos, int end, int[] fields) {
+			return trie.match(text, pos, end, fields, field);
+		}
+	}
+	
+	/**
+	 * Skips the 'o'/'O' suffix, which must be the right one for the day 
+	 * when that was read before it; any of st, nd, rd, th otherwise.
+	 */
+	protected static class OrdinalParser extends FieldParser {
+		final int day;
+		
+		OrdinalParser(int day) {
+			super(-1);
+			this.day = day;
+		}
+		
+		@Override
+		public boolean equals(Object other) {
+			return super.equals(other) && ((OrdinalParser) other).day == day;
+		}
+		
+		@Override
+		int parse(CharSequence text, int pos, int end, int[] fields) {
+			if (pos + 2 > end) {
+				return ~pos;
+			}
+			
+			char first = NameTrie.fold(text.charAt(pos));
+			char second = NameTrie.fold(text.charAt(pos + 1));
+			
+			if ((fields[PARSED_FIELDS] & (1 << day)) != 0) {
+				String suffix = ordinalSuffix(fields[day]);
+				return first == suffix.charAt(0) && second == suffix.charAt(1) ? pos + 2 : ~pos;
+			}
+			
+			if ((first == 's' && second == 't') || (first == 'n' && second == 'd') 
+					|| (first == 'r' && second == 'd') || (first == 't' && second == 'h')) {
+				return pos + 2;
+			}
+			return ~pos;
+		}
+	}
+	
+	/**
+	 * Reads the formatter's own zone names, short or long, standard or 
+	 * daylight, into the DST flag; the offset itself comes from the zone.
+	 */
+	protected static class ZoneNameParser extends FieldParser {
+		final NameTrie trie;
+		
+		ZoneNameParser(TimeZone zone, Locale locale) {
+			super(FIELD_DAYLIGHT);
+			this.trie = new NameTrie().putAll(zoneNames(zone, TimeZone.LONG, locale), 0).putAll(zoneNames(zone, TimeZone.SHORT, locale), 0);
+		}
+		
+		@Override
+		public boolean equals(Object other) {
+			return this == other;
+		}
+		
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(this);
+		}
+		
+		@Override
+		int parse(CharSequence text, int pos, int end, int[] fields) {
+			return trie.match(text, pos, end, fields, FIELD_DAYLIGHT);
+		}
+	}
+	
+	/**
+	 * Reads 'Z' (+hhmm) or 'X', 'XX', 'XXX' (+hh, +hhmm, +hh:mm; or "Z" for 
+	 * UTC) into the total offset.
+	 */
+	protected static class ZoneOffsetParser extends FieldParser {
+		final int isoLength;
+		
+		ZoneOffsetParser(int isoLength) {
+			super(FIELD_ZONE_OFFSET);
+			this.isoLength = isoLength;
+		}
+		
+		@Override
+		public boolean equals(Object other) {
+			return super.equals(other) && ((ZoneOffsetParser) other).isoLength == isoLength;
+		}
+		
+		@Override
+		int parse(CharSequence text, int pos, int end, int[] fields) {
+			if (pos >= end) {
+				return ~pos;
+			}
+			
+			char sign = text.charAt(pos);
+			if (sign == 'Z' && isoLength > 0) {
+				setField(fields, FIELD_ZONE_OFFSET, 0);
+				return pos + 1;
+			}
+			if (sign != '+' && sign != '-') {
+				return ~pos;
+			}
+			
+			int i = pos + 1;
+			int hours = twoDigits(text, i, end);
+			if (hours < 0 || hours > 23) {
+				return ~i;
+			}
+			i += 2;
+			
+			int minutes = 0;
+			if (isoLength != 1) {
+				if (isoLength == 3) {
+					if (i >= end || text.charAt(i) != ':') {
+						return ~i;
+					}
+					i++;
+				}
+				minutes = twoDigits(text, i, end);
+				if (minutes < 0 || minutes > 59) {
+					return ~i;
+				}
+				i += 2;
+			}
+			
+			int offset = (hours * 60 + minutes) * 60000;
+			setField(fields, FIELD_ZONE_OFFSET, sign == '-' ? -offset : offset);
+			return i;
+		}
+		
+		static int twoDigits(CharSequence text, int pos, int end) {
+			if (pos + 2 > end) {
+				return -1;
+			}
+			int tens = Character.digit(text.charAt(pos), 10);
+			int units = Character.digit(text.charAt(pos + 1), 10);
+			return tens < 0 || units < 0 ? -1 : tens * 10 + units;
+		}
+	}
+	
+	/**
+	 * Zones match by ID and rules, so that custom zones sharing an ID (or a 
+	 * zone whose raw offset was changed) get formatters of their own. Cached 
+	 * keys and formatters share a clone, safe from later changes to the 
+	 * caller's zone.
+	 */
+	protected static final class CacheKey {
+		final String pattern;
+		final Locale locale;
+		final TimeZone zone;
+		final int hash;
+		
+		CacheKey(String pattern, Locale locale, TimeZone zone) {
+			this.pattern = pattern;
+			this.locale = locale;
+			this.zone = zone;
+			this.hash = ((pattern.hashCode() * 31 + locale.hashCode()) * 31 + zone.getID().hashCode()) * 31 + zone.getRawOffset();
+		}
+		
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof CacheKey)) {
+				return false;
+			}
+			CacheKey key = (CacheKey) other;
+			return hash == key.hash && pattern.equals(key.pattern) && locale.equals(key.locale) 
+					&& zone.getID().equals(key.zone.getID()) && zone.hasSameRules(key.zone);
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+	
+	/**
+	 * Lock-striped LRU: each segment is an access-ordered LinkedHashMap 
+	 * guarded by its own monitor, so lookups of different patterns rarely 
+	 * contend. Misses are compiled outside the lock.
+	 */
+	protected static final class FormatCache {
+		private final Segment[] segments;
+		private final LongAdder hits = new LongAdder();
+		private final LongAdder misses = new LongAdder();
+		private final LongAdder evictions = new LongAdder();
+		
+		FormatCache(int capacity, int segmentCount) {
+			this.segments = new Segment[segmentCount];
+			int perSegment = (capacity + segmentCount - 1) / segmentCount;
+			for (int i = 0; i < segmentCount; i++) {
+				segments[i] = new Segment(perSegment, evictions);
+			}
+		}
+		
+		ExtendedDateFormat get(String pattern, Locale locale, TimeZone zone) {
+			if (pattern == null) {
+				throw new NullPointerException("Pattern cannot be null");
+			}
+			
+			CacheKey key = new CacheKey(pattern, locale, zone);
+			int h = key.hash ^ (key.hash >>> 16);
+			Segment segment = segments[(h & 0x7fffffff) % segments.length];
+			
+			ExtendedDateFormat format;
+			synchronized (segment) {
+				format = segment.get(key);
+			}
+			if (format != null) {
+				hits.increment();
+				return format;
+			}
+			
+			misses.increment();
+			TimeZone ownZone = (TimeZone) zone.clone();
+			ExtendedDateFormat created = new ExtendedDateFormat(pattern, locale, ownZone);
+			synchronized (segment) {
+				format = segment.get(key);
+				if (format == null) {
+					segment.put(new CacheKey(pattern, locale, ownZone), created);
+					format = created;
+				}
+			}
+			return format;
+		}
+		
+		CacheStatistics statistics() {
+			int size = 0;
+			for (Segment segment : segments) {
+				synchronized (segment) {
+					size += segment.size();
+				}
+			}
+			return new CacheStatistics(hits.sum(), misses.sum(), evictions.sum(), size);
+		}
+		
+		void clear() {
+			for (Segment segment : segments) {
+				synchronized (segment) {
+					segment.clear();
+				}
+			}
+		}
+	}
+	
+	@SuppressWarnings("serial")
+	protected static final class Segment extends LinkedHashMap<CacheKey, ExtendedDateFormat> {
+		private final int capacity;
+		private final LongAdder evictions;
+		
+		Segment(int capacity, LongAdder evictions) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+			this.evictions = evictions;
+		}
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<CacheKey, ExtendedDateFormat> eldest) {
+			if (size() > capacity) {
+				evictions.increment();
+				return true;
+			}
+			return false;
+		}
+	}
+	
+	/**
+	 * Point-in-time counters of the getInstance() cache.
+	 */
+	public static final class CacheStatistics {
+		private final long hitCount;
+		private final long missCount;
+		private final long evictionCount;
+		private final int size;
+		
+		CacheStatistics(long hitCount, long missCount, long evictionCount, int size) {
+			this.hitCount = hitCount;
+			this.missCount = missCount;
+			this.evictionCount = evictionCount;
+			this.size = size;
+		}
+		
+		public long getHitCount() {
+			return hitCount;
+		}
+		
+		public long getMissCount() {
+			return missCount;
+		}
+		
+		public long getEvictionCount() {
+			return evictionCount;
+		}
+		
+		public int getSize() {
+			return size;
+		}
+		
+		public double getHitRate() {
+			long requests = hitCount + missCount;
+			return requests == 0 ? 1.0 : (double) hitCount / requests;
+		}
+		
+		@Override
+		public String toString() {
+			return "{hits : " + hitCount + ", misses : " + missCount + ", evictions : " + evictionCount + ", size : " + size + "}";
+		}
+	}
+	
+	/**
+	 * Base of the hidden classes emitted by PrinterGenerator. Printers the 
+	 * generator does not inline (names, zones, ordinals) are called through 
+	 * the delegates array; each such call site only ever sees one printer 
+	 * class, so it stays monomorphic.
+	 */
+	protected static abstract class GeneratedPrinter extends FieldPrinter {
+		protected final FieldPrinter[] delegates;
+		
+		protected GeneratedPrinter(FieldPrinter[] delegates) {
+			this.delegates = delegates;
+		}
+	}
+	
+	/**
+	 * Single daemon thread running promotions; created on first use, so 
+	 * it never starts when no formatter gets hot.
+	 */
+	protected static final class Promoter {
+		static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable task) {
+				Thread thread = new Thread(task, "ExtendedDateFormat-promoter");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+	
+	/**
+	 * Writes a minimal class file for a GeneratedPrinter subclass and 
+	 * defines it with Lookup.defineHiddenClass; only the JDK is needed. The 
+	 * two print methods are branch-free, so no StackMapTable is required. 
+	 * Literals are stored char by char (or through writeText when longer), 
+	 * numbers call writePadded/appendPadded with constant arguments.
+	 */
+	protected static final class PrinterGenerator {
+		private static final String OWNER = "ExtendedDateFormat";
+		private static final String SUPER = "ExtendedDateFormat$GeneratedPrinter";
+		private static final String PRINTER = "ExtendedDateFormat$FieldPrinter";
+		private static final String NAME = "ExtendedDateFormat$Generated";
+		private static final int INLINE_LITERAL_LENGTH = 4;
+		
+		private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+		private final DataOutputStream pool = new DataOutputStream(poolBytes);
+		private final Map<String, Integer> entries = new HashMap<String, Integer>();
+		private int poolCount = 1;
+		
+		private final FieldPrinter[] printers;
+		private final List<FieldPrinter> delegates = new ArrayList<FieldPrinter>();
+		
+		private PrinterGenerator(FieldPrinter[] printers) {
+			this.printers = printers;
+		}
+		
+		/**
+		 * Returns the pattern with a generated printer attached, or the 
+		 * pattern itself if the class was refused when defined.
+		 */
+		static CompiledPattern generate(CompiledPattern compiled) {
+			if (compiled.generated != null) {
+				return compiled;
+			}
+			try {
+				return compiled.withGenerated(new PrinterGenerator(compiled.printers).define());
+			}
+			catch (LinkageError | IllegalAccessException | IllegalArgumentException | IllegalStateException | SecurityException e) {
+				// the VM, the lookup or a security manager refusing the class; anything else is a bug and propagates
+				return compiled;
+			}
+		}
+		
+		private FieldPrinter define() throws IllegalAccessException {
+			try {
+				byte[] bytes = classBytes();
+				MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+				MethodHandle constructor = lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class, FieldPrinter[].class));
+				return (FieldPrinter) constructor.invoke(delegates.toArray(new FieldPrinter[delegates.size()]));
+			}
+			catch (IllegalAccessException | RuntimeException | Error e) {
+				throw e;
+			}
+			catch (Throwable e) {
+				// an IOException or NoSuchMethodException cannot come from the class written here
+				throw new UndeclaredThrowableException(e);
+			}
+		}
+		
+		private byte[] classBytes() throws IOException {
+			// the constant pool is written out first, so every entry is created here
+			int thisClass = classRef(NAME);
+			int superClass = classRef(SUPER);
+			int code = utf8("Code");
+			int init = utf8("<init>");
+			int initDescriptor = utf8("([L" + PRINTER + ";)V");
+			int print = utf8("print");
+			int appendDescriptor = utf8("([ILjava/lang/StringBuilder;)V");
+			int writeDescriptor = utf8("([I[CI)I");
+			
+			byte[] constructor = constructorCode();
+			byte[] appendCode = appendCode();
+			byte[] writeCode = writeCode();
+			
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0);
+			out.writeShort(52);
+			out.writeShort(poolCount);
+			out.write(poolBytes.toByteArray());
+			out.writeShort(0x0010 | 0x0020); // ACC_FINAL | ACC_SUPER
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(0); // interfaces
+			out.writeShort(0); // fields
+			out.writeShort(3);
+			writeMethod(out, 0x0001, init, initDescriptor, code, 2, constructor);
+			writeMethod(out, 0, print, appendDescriptor, code, 3, appendCode);
+			writeMethod(out, 0, print, writeDescriptor, code, 4, writeCode);
+			out.writeShort(0); // attributes
+			return bytes.toByteArray();
+		}
+		
+		private void writeMethod(DataOutputStream out, int access, int name, int descriptor, int codeName, int maxLocals, byte[] code) throws IOException {
+			out.writeShort(access);
+			out.writeShort(name);
+			out.writeShort(descriptor);
+			out.writeShort(1);
+			out.writeShort(codeName);
+			out.writeInt(12 + code.length);
+			out.writeShort(8); // max stack: the deepest sequence pushes six values
+			out.writeShort(maxLocals);
+			out.writeInt(code.length);
+			out.write(code);
+			out.writeShort(0); // exception table
+			out.writeShort(0); // attributes
+		}
+		
+		private byte[] constructorCode() throws IOException {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream code = new DataOutputStream(bytes);
+			code.writeByte(ALOAD_0);
+			code.writeByte(ALOAD_1);
+			code.writeByte(INVOKESPECIAL);
+			code.writeShort(methodRef(SUPER, "<init>", "([L" + PRINTER + ";)V"));
+			code.writeByte(RETURN);
+			return bytes.toByteArray();
+		}
+		
+		/**
+		 * print(int[] fields, StringBuilder buffer)
+		 */
+		private byte[] appendCode() throws IOException {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream code = new DataOutputStream(bytes);
+			delegates.clear();
+			
+			for (FieldPrinter printer : printers) {
+				if (printer.getClass() == LiteralPrinter.class) {
+					String text = ((LiteralPrinter) printer).text;
+					code.writeByte(ALOAD_2);
+					if (text.length() == 1) {
+						pushInt(code, text.charAt(0));
+						code.writeByte(INVOKEVIRTUAL);
+						code.writeShort(methodRef("java/lang/StringBuilder", "append", "(C)Ljava/lang/StringBuilder;"));
+					}
+					else {
+						pushString(code, text);
+						code.writeByte(INVOKEVIRTUAL);
+						code.writeShort(methodRef("java/lang/StringBuilder", "append", "(Ljava/lang/String;)Ljava/lang/StringBuilder;"));
+					}
+					code.writeByte(POP);
+				}
+				else if (isInlinedNumber(printer)) {
+					code.writeByte(ALOAD_2);
+					pushNumberArguments(code, (NumberPrinter) printer);
+					code.writeByte(INVOKESTATIC);
+					code.writeShort(methodRef(OWNER, "appendPadded", "(Ljava/lang/StringBuilder;IIC)V"));
+				}
+				else {
+					pushDelegate(code, printer);
+					code.writeByte(ALOAD_1);
+					code.writeByte(ALOAD_2);
+					code.writeByte(INVOKEVIRTUAL);
+					code.writeShort(methodRef(PRINTER, "print", "([ILjava/lang/StringBuilder;)V"));
+				}
+			}
+			
+			code.writeByte(RETURN);
+			return bytes.toByteArray();
+		}
+		
+		/**
+		 * print(int[] fields, char[] buffer, int pos), with pos kept in local 3
+		 */
+		private byte[] writeCode() throws IOException {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream code = new DataOutputStream(bytes);
+			delegates.clear();
+			
+			for (FieldPrinter printer : printers) {
+				if (printer.getClass() == LiteralPrinter.class) {
+					String text = ((LiteralPrinter) printer).text;
+					if (text.length() <= INLINE_LITERAL_LENGTH) {
+						for (int i = 0; i < text.length(); i++) {
+							code.writeByte(ALOAD_2);
+							code.writeByte(ILOAD_3);
+							code.writeByte(IINC);
+							code.writeByte(3);
+							code.writeByte(1);
+							pushInt(code, text.charAt(i));
+							code.writeByte(CASTORE);
+						}
+					}
+					else {
+						code.writeByte(ALOAD_2);
+						code.writeByte(ILOAD_3);
+						pushString(code, text);
+						code.writeByte(INVOKESTATIC);
+						code.writeShort(methodRef(OWNER, "writeText", "([CILjava/lang/String;)I"));
+						code.writeByte(ISTORE_3);
+					}
+				}
+				else if (isInlinedNumber(printer)) {
+					code.writeByte(ALOAD_2);
+					code.writeByte(ILOAD_3);
+					pushNumberArguments(code, (NumberPrinter) printer);
+					code.writeByte(INVOKESTATIC);
+					code.writeShort(methodRef(OWNER, "writePadded", "([CIIIC)I"));
+					code.writeByte(ISTORE_3);
+				}
+				else {
+					pushDelegate(code, printer);
+					code.writeByte(ALOAD_1);
+					code.writeByte(ALOAD_2);
+					code.writeByte(ILOAD_3);
+					code.writeByte(INVOKEVIRTUAL);
+					code.writeShort(methodRef(PRINTER, "print", "([I[CI)I"));
+					code.writeByte(ISTORE_3);
+				}
+			}
+			
+			code.writeByte(ILOAD_3);
+			code.writeByte(IRETURN);
+			return bytes.toByteArray();
+		}
+		
+		private static boolean isInlinedNumber(FieldPrinter printer) {
+			return printer.getClass() == NumberPrinter.class || printer.getClass() == ReducedNumberPrinter.class;
+		}
+		
+		/**
+		 * Pushes value, width and zero digit, i.e. fields[field] (% modulus).
+		 */
+		private void pushNumberArguments(DataOutputStream code, NumberPrinter printer) throws IOException {
+			code.writeByte(ALOAD_1);
+			pushInt(code, printer.field);
+			code.writeByte(IALOAD);
+			if (printer instanceof ReducedNumberPrinter) {
+				pushInt(code, ((ReducedNumberPrinter) printer).modulus);
+				code.writeByte(IREM);
+			}
+			pushInt(code, printer.width);
+			pushInt(code, printer.zero);
+		}
+		
+		private void pushDelegate(DataOutputStream code, FieldPrinter printer) throws IOException {
+			code.writeByte(ALOAD_0);
+			code.writeByte(GETFIELD);
+			code.writeShort(fieldRef(SUPER, "delegates", "[L" + PRINTER + ";"));
+			pushInt(code, delegates.size());
+			code.writeByte(AALOAD);
+			delegates.add(printer);
+		}
+		
+		private void pushInt(DataOutputStream code, int value) throws IOException {
+			if (value >= -1 && value <= 5) {
+				code.writeByte(ICONST_0 + value);
+			}
+			else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+				code.writeByte(BIPUSH);
+				code.writeByte(value);
+			}
+			else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+				code.writeByte(SIPUSH);
+				code.writeShort(value);
+			}
+			else {
+				code.writeByte(LDC_W);
+				code.writeShort(integer(value));
+			}
+		}
+		
+		private void pushString(DataOutputStream code, String value) throws IOException {
+			int index = string(value);
+			if (index < 256) {
+				code.writeByte(LDC);
+				code.writeByte(index);
+			}
+			else {
+				code.writeByte(LDC_W);
+				code.writeShort(index);
+			}
+		}
+		
+		private int utf8(String value) throws IOException {
+			Integer index = entries.get("U" + value);
+			if (index == null) {
+				pool.writeByte(1);
+				pool.writeUTF(value);
+				index = register("U" + value);
+			}
+			return index;
+		}
+		
+		private int classRef(String internalName) throws IOException {
+			Integer index = entries.get("C" + internalName);
+			if (index == null) {
+				int name = utf8(internalName);
+				pool.writeByte(7);
+				pool.writeShort(name);
+				index = register("C" + internalName);
+			}
+			return index;
+		}
+		
+		private int string(String value) throws IOException {
+			Integer index = entries.get("S" + value);
+			if (index == null) {
+				int utf = utf8(value);
+				pool.writeByte(8);
+				pool.writeShort(utf);
+				index = register("S" + value);
+			}
+			return index;
+		}
+		
+		private int integer(int value) throws IOException {
+			Integer index = entries.get("I" + value);
+			if (index == null) {
+				pool.writeByte(3);
+				pool.writeInt(value);
+				index = register("I" + value);
+			}
+			return index;
+		}
+		
+		private int memberRef(int tag, String owner, String name, String descriptor) throws IOException {
+			String key = tag + owner + '.' + name + descriptor;
+			Integer index = entries.get(key);
+			if (index == null) {
+				int ownerIndex = classRef(owner);
+				int nameIndex = utf8(name);
+				int descriptorIndex = utf8(descriptor);
+				Integer nameAndType = entries.get("N" + name + descriptor);
+				if (nameAndType == null) {
+					pool.writeByte(12);
+					pool.writeShort(nameIndex);
+					pool.writeShort(descriptorIndex);
+					nameAndType = register("N" + name + descriptor);
+				}
+				pool.writeByte(tag);
+				pool.writeShort(ownerIndex);
+				pool.writeShort(nameAndType);
+				index = register(key);
+			}
+			return index;
+		}
+		
+		private int methodRef(String owner, String name, String descriptor) throws IOException {
+			return memberRef(10, owner, name, descriptor);
+		}
+		
+		private int fieldRef(String owner, String name, String descriptor) throws IOException {
+			return memberRef(9, owner, name, descriptor);
+		}
+		
+		private int register(String key) {
+			int index = poolCount++;
+			entries.put(key, index);
+			return index;
+		}
+		
+		private static final int ICONST_0 = 0x03;
+		private static final int BIPUSH = 0x10;
+		private static final int SIPUSH = 0x11;
+		private static final int LDC = 0x12;
+		private static final int LDC_W = 0x13;
+		private static final int ILOAD_3 = 0x1d;
+		private static final int ALOAD_0 = 0x2a;
+		private static final int ALOAD_1 = 0x2b;
+		private static final int ALOAD_2 = 0x2c;
+		private static final int IALOAD = 0x2e;
+		private static final int AALOAD = 0x32;
+		private static final int ISTORE_3 = 0x3e;
+		private static final int CASTORE = 0x55;
+		private static final int POP = 0x57;
+		private static final int IREM = 0x70;
+		private static final int IINC = 0x84;
+		private static final int IRETURN = 0xac;
+		private static final int RETURN = 0xb1;
+		private static final int GETFIELD = 0xb4;
+		private static final int INVOKEVIRTUAL = 0xb6;
+		private static final int INVOKESPECIAL = 0xb7;
+		private static final int INVOKESTATIC = 0xb8;
 	}
 }
@@ -0,0 +1,269 @@
+/* https://github.com/faadias/java-stuff/blob/master/ExtendedDateFormatTest.java */
+
+/* ExtendedDateFormatTest.java -- Regression checks for ExtendedDateFormat
+ * Copyright (C) 2014  Felipe Augusto Araujo Dias (@faadias1)
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.SimpleTimeZone;
+import java.util.TimeZone;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 
+ * @author Felipe Augusto Araujo Dias (@faadias1)
+ * @version 1.0.0
+ * 
+ * Regression checks for bugs found in review, each comparing against
+ * SimpleDateFormat or another path of ExtendedDateFormat. Run with
+ * "java ExtendedDateFormatTest"; exits with status 1 on any failure.
+ * 
+ */
+public class ExtendedDateFormatTest {
+	
+	private static int failures = 0;
+	
+	public static void main(String[] args) throws Exception {
+		twoDigitYearKeepsExplicitOffset();
+		cacheTellsZonesApartByRules();
+		negativeWeekYearFitsMaxLength();
+		incrementalFormatterHandlesBcWeekYears();
+		batchHandlesBcWeekYears();
+		secondCacheHandlesBcWeekYears();
+		generatedHeaderSurvivesCommentEnd();
+		secondCacheWritesUtf8();
+		
+		System.out.println(failures == 0 ? "OK" : failures + " failure(s)");
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+	
+	/**
+	 * A two-digit year moved to the next century must keep the parsed
+	 * offset, even when the zone is in DST at that date.
+	 */
+	static void twoDigitYearKeepsExplicitOffset() throws Exception {
+		String pattern = "yy-MM-dd HH:mm:ss.SSS Z";
+		String text = "46-06-04 01:10:23.118 -0500";
+		TimeZone zone = TimeZone.getTimeZone("America/New_York");
+		
+		ExtendedDateFormat format = ExtendedDateFormat.getInstance(pattern, Locale.US, zone);
+		SimpleDateFormat reference = new SimpleDateFormat(pattern, Locale.US);
+		reference.setTimeZone(zone);
+		long expected = reference.parse(text).getTime();
+		
+		check("parse", expected, format.parse(text, new ParsePosition(0)).getTime());
+		check("parseToEpochMillis", expected, format.parseToEpochMillis(text, 0, text.length()));
+	}
+	
+	/**
+	 * getInstance() must not hand out a formatter of another zone that 
+	 * merely shares the ID.
+	 */
+	static void cacheTellsZonesApartByRules() {
+		String pattern = "yyyy-MM-dd HH:mm Z";
+		TimeZone east = new SimpleTimeZone(3600000, "Custom/Zone");
+		TimeZone west = new SimpleTimeZone(-7200000, "Custom/Zone");
+		
+		check("custom east", "1970-01-01 01:00 +0100", ExtendedDateFormat.getInstance(pattern, Locale.US, east).format(0L));
+		check("custom west", "1969-12-31 22:00 -0200", ExtendedDateFormat.getInstance(pattern, Locale.US, west).format(0L));
+		
+		TimeZone shifted = TimeZone.getTimeZone("UTC");
+		ExtendedDateFormat.getInstance(pattern, Locale.US, shifted);
+		shifted.setRawOffset(3600000);
+		check("changed raw offset", "1970-01-01 01:00 +0100", ExtendedDateFormat.getInstance(pattern, Locale.US, shifted).format(0L));
+		check("original zone", "1970-01-01 00:00 +0000", ExtendedDateFormat.getInstance(pattern, Locale.US, TimeZone.getTimeZone("UTC")).format(0L));
+	}
+	
+	/**
+	 * maxFormattedLength() must leave room for the '-' of a BC week year.
+	 */
+	static void negativeWeekYearFitsMaxLength() {
+		long[] instants = {Long.MIN_VALUE, -70000000000000L, -62167219200000L, -62198755200000L};
+		TimeZone utc = TimeZone.getTimeZone("UTC");
+		
+		for (String pattern : new String[] {"YY", "YYYY", "yy YY ww W"}) {
+			ExtendedDateFormat format = ExtendedDateFormat.getInstance(pattern, Locale.US, utc);
+			for (long epochMillis : instants) {
+				String name = "\"" + pattern + "\" at " + epochMillis;
+				String expected = format.format(epochMillis);
+				char[] buffer = new char[format.maxFormattedLength()];
+				try {
+					int end = format.formatTo(epochMillis, buffer, 0);
+					check(name, expected, new String(buffer, 0, end));
+				}
+				catch (ArrayIndexOutOfBoundsException e) {
+					check(name, expected, e.toString());
+				}
+			}
+		}
+	}
+	
+	/**
+	 * IncrementalFormatter keeps its text in a maxFormattedLength() array; 
+	 * a BC week year must fit, and the instants after it still format.
+	 */
+	static void incrementalFormatterHandlesBcWeekYears() {
+		ExtendedDateFormat format = ExtendedDateFormat.getInstance("yy YY ww W", Locale.US, TimeZone.getTimeZone("UTC"));
+		IncrementalFormatter incremental = new IncrementalFormatter(format);
+		long[] instants = {Long.MIN_VALUE, -70000000000000L, -70000000000000L + 86400000L, 1400000000000L, 1400000000000L + 604800000L};
+		
+		for (long epochMillis : instants) {
+			String actual;
+			try {
+				actual = incremental.format(epochMillis);
+			}
+			catch (RuntimeException e) {
+				actual = e.toString();
+			}
+			check("incremental at " + epochMillis, format.format(epochMillis), actual);
+		}
+	}
+	
+	/**
+	 * formatBatch() and formatParallel() lay values out by 
+	 * maxFormattedLength(); BC week years must come out as format() has them.
+	 */
+	static void batchHandlesBcWeekYears() {
+		TimeZone utc = TimeZone.getTimeZone("UTC");
+		ForkJoinPool pool = new ForkJoinPool(2);
+		
+		for (String pattern : new String[] {"YY", "YYYY-ww"}) {
+			ExtendedDateFormat format = ExtendedDateFormat.getInstance(pattern, Locale.US, utc);
+			for (int size : new int[] {3, 6, 999, 5000}) {
+				long[] epochs = new long[size];
+				for (int i = 0; i < size; i++) {
+					epochs[i] = -70000000000000L + i * 3600000L;
+				}
+				
+				String name = "\"" + pattern + "\" x " + size;
+				try {
+					ExtendedDateFormat.Batch batch = format.formatBatch(epochs, 0, size);
+					ExtendedDateFormat.Batch parallel = format.formatParallel(epochs, pool);
+					for (int i = 0; i < size; i++) {
+						check("formatBatch " + name + " at " + i, format.format(epochs[i]), batch.get(i));
+						check("formatParallel " + name + " at " + i, format.format(epochs[i]), parallel.get(i));
+					}
+				}
+				catch (ArrayIndexOutOfBoundsException e) {
+					check(name, "no exception", e.toString());
+				}
+			}
+		}
+		pool.shutdown();
+	}
+	
+	/**
+	 * The second cache must print what the uncached formatter prints, 
+	 * sign of a BC week year included.
+	 */
+	static void secondCacheHandlesBcWeekYears() {
+		ExtendedDateFormat format = new ExtendedDateFormat("YY ss", Locale.US, TimeZone.getTimeZone("UTC"));
+		ExtendedDateFormat cached = format.withSecondCache();
+		
+		for (long epochMillis : new long[] {Long.MIN_VALUE, -70000000000000L, -70000000000000L + 1, 1400000000123L}) {
+			String actual;
+			try {
+				actual = cached.format(epochMillis);
+			}
+			catch (RuntimeException e) {
+				actual = e.toString();
+			}
+			check("second cache at " + epochMillis, format.format(epochMillis), actual);
+		}
+	}
+	
+	/**
+	 * The UTF-8 flavours must write through the second cache exactly the 
+	 * bytes the uncached formatter writes, names and digits of other 
+	 * scripts included.
+	 */
+	static void secondCacheWritesUtf8() {
+		TimeZone zone = TimeZone.getTimeZone("Europe/Moscow");
+		String[] patterns = {"yyyy-MM-dd HH:mm:ss.SSS", "EEEE d MMMM yyyy HH:mm:ss,SS Z", "ss.S 'и' SSSS"};
+		long[] instants = {1400000000123L, 1400000000999L, 1400000000000L, 1400000001005L, -70000000000000L};
+		
+		for (String pattern : patterns) {
+			ExtendedDateFormat format = new ExtendedDateFormat(pattern, new Locale("ru"), zone);
+			ExtendedDateFormat cached = format.withSecondCache();
+			for (long epochMillis : instants) {
+				String name = "\"" + pattern + "\" at " + epochMillis;
+				String expected = format.format(epochMillis);
+				
+				byte[] array = new byte[3 * format.maxFormattedLength()];
+				int end = cached.formatTo(epochMillis, array, 0);
+				check("byte[] " + name, expected, new String(array, 0, end, StandardCharsets.UTF_8));
+				
+				ByteBuffer direct = ByteBuffer.allocateDirect(3 * format.maxFormattedLength());
+				cached.formatTo(epochMillis, direct);
+				direct.flip();
+				check("direct " + name, expected, StandardCharsets.UTF_8.decode(direct).toString());
+			}
+		}
+	}
+	
+	/**
+	 * A "*" + "/" quoted in an annotated pattern must not close the header 
+	 * comment of the generated source.
+	 */
+	static void generatedHeaderSurvivesCommentEnd() {
+		String pattern = "'a*/b' yyyy";
+		String source = ExtendedDatePatternProcessor.generate("QuotedFormat", pattern, new ExtendedDateFormat(pattern));
+		String end = "do not edit. */";
+		
+		source = decodeUnicodeEscapes(source);
+		check("header comment end", source.indexOf(end) + end.length() - 2, source.indexOf("*/"));
+	}
+	
+	/**
+	 * The source as javac reads it, unicode escapes being translated before 
+	 * comments are seen; a backslash that is itself escaped starts none.
+	 */
+	static String decodeUnicodeEscapes(String source) {
+		StringBuilder decoded = new StringBuilder(source.length());
+		int backslashes = 0;
+		for (int i = 0; i < source.length(); i++) {
+			char c = source.charAt(i);
+			if (c == '\\' && backslashes % 2 == 0 && i + 1 < source.length() && source.charAt(i + 1) == 'u') {
+				int j = i + 1;
+				while (source.charAt(j) == 'u') {
+					j++;
+				}
+				decoded.append((char) Integer.parseInt(source.substring(j, j + 4), 16));
+				i = j + 3;
+				backslashes = 0;
+			}
+			else {
+				decoded.append(c);
+				backslashes = c == '\\' ? backslashes + 1 : 0;
+			}
+		}
+		return decoded.toString();
+	}
+	
+	static void check(String name, Object expected, Object actual) {
+		if (expected == null ? actual != null : !expected.equals(actual)) {
+			failures++;
+			System.out.println("FAIL " + name + ": expected " + expected + ", got " + actual);
+		}
+	}
+}
@@ -0,0 +1,65 @@
+/* https://github.com/faadias/java-stuff/blob/master/ExtendedDatePattern.java */
+
+/* ExtendedDatePattern.java -- Build-time ExtendedDateFormat patterns
+ * Copyright (C) 2014  Felipe Augusto Araujo Dias (@faadias1)
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 
+ * @author Felipe Augusto Araujo Dias (@faadias1)
+ * @version 1.0.0
+ *
+ * Marks an ExtendedDateFormat pattern known at build time. When the 
+ * sources are compiled with ExtendedDatePatternProcessor, e.g. 
+ * 
+ *   javac -processor ExtendedDatePatternProcessor ...
+ * 
+ * a dedicated ExtendedDateFormat subclass is generated for the pattern, 
+ * next to the annotated element. The pattern is lexed and validated by 
+ * javac, so a malformed one fails the build. For example
+ * 
+ *   {@literal @}ExtendedDatePattern("'Today is' MMM do, yyyy")
+ *   class Header {}
+ * 
+ * generates HeaderFormat, and on a String constant the constant itself 
+ * is the pattern:
+ * 
+ *   {@literal @}ExtendedDatePattern static final String LOG_TIME = "yyyy-MM-dd HH:mm:ss.SSS";
+ * 
+ * generates LogTimeFormat.
+ * 
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target({ElementType.TYPE, ElementType.FIELD})
+public @interface ExtendedDatePattern {
+	
+	/**
+	 * The pattern; may be left empty on a String constant field.
+	 */
+	String value() default "";
+	
+	/**
+	 * Simple name of the generated class; derived from the annotated 
+	 * element when empty.
+	 */
+	String name() default "";
+}
@@ -0,0 +1,333 @@
+/* https://github.com/faadias/java-stuff/blob/master/ExtendedDatePatternProcessor.java */
+
+/* ExtendedDatePatternProcessor.java -- Generates ExtendedDateFormat subclasses at build time
+ * Copyright (C) 2014  Felipe Augusto Araujo Dias (@faadias1)
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.tools.Diagnostic;
+
+/**
+ * 
+ * @author Felipe Augusto Araujo Dias (@faadias1)
+ * @version 1.0.0
+ * 
+ * Annotation processor for ExtendedDatePattern. For each annotated 
+ * element the pattern is compiled once, at build time, by an actual 
+ * ExtendedDateFormat; an invalid pattern is reported as a compilation 
+ * error on the element. Otherwise a final subclass is written whose 
+ * lexAnalyzer() replays the precomputed tokens and whose printer chain 
+ * is fused into one straight-line Printer, the source-level counterpart 
+ * of what withGeneratedCode() defines at run time.
+ * 
+ * ExtendedDateFormat lives in the unnamed package, so annotated elements 
+ * must too.
+ * 
+ */
+@SupportedAnnotationTypes("ExtendedDatePattern")
+public class ExtendedDatePatternProcessor extends AbstractProcessor {
+	private static final String SUFFIX = "Format";
+	private static final int INLINE_LITERAL_LENGTH = 4;
+	private static final Map<Integer, String> FIELD_NAMES = fieldNames();
+	
+	private final Set<String> generated = new HashSet<String>();
+	
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+	
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		for (Element element : roundEnv.getElementsAnnotatedWith(ExtendedDatePattern.class)) {
+			ExtendedDatePattern annotation = element.getAnnotation(ExtendedDatePattern.class);
+			
+			if (!processingEnv.getElementUtils().getPackageOf(element).isUnnamed()) {
+				error(element, "@ExtendedDatePattern is only supported in the unnamed package, next to ExtendedDateFormat");
+				continue;
+			}
+			
+			String pattern = patternOf(element, annotation);
+			if (pattern == null) {
+				continue;
+			}
+			
+			ExtendedDateFormat format;
+			try {
+				format = new ExtendedDateFormat(pattern, Locale.ROOT, TimeZone.getTimeZone("UTC"));
+			}
+			catch (IllegalArgumentException e) {
+				error(element, "Invalid date pattern \"" + pattern + "\": " + e.getMessage());
+				continue;
+			}
+			
+			String name = annotation.name().length() > 0 ? annotation.name() : defaultName(element);
+			if (!SourceVersion.isIdentifier(name) || SourceVersion.isKeyword(name)) {
+				error(element, "Invalid generated class name " + name);
+				continue;
+			}
+			if (!generated.add(name)) {
+				error(element, "Duplicate generated class name " + name);
+				continue;
+			}
+			
+			try {
+				Writer writer = processingEnv.getFiler().createSourceFile(name, element).openWriter();
+				try {
+					writer.write(generate(name, pattern, format));
+				}
+				finally {
+					writer.close();
+				}
+			}
+			catch (IOException e) {
+				error(element, "Could not write " + name + ": " + e.getMessage());
+			}
+		}
+		return true;
+	}
+	
+	private String patternOf(Element element, ExtendedDatePattern annotation) {
+		if (annotation.value().length() > 0) {
+			return annotation.value();
+		}
+		if (element.getKind() == ElementKind.FIELD) {
+			Object constant = ((VariableElement) element).getConstantValue();
+			if (constant instanceof String) {
+				return (String) constant;
+			}
+		}
+		error(element, "@ExtendedDatePattern needs a pattern, either as its value or on a String constant");
+		return null;
+	}
+	
+	/**
+	 * LOG_TIME becomes LogTimeFormat, class Header becomes HeaderFormat.
+	 */
+	private static String defaultName(Element element) {
+		String simpleName = element.getSimpleName().toString();
+		if (element.getKind() != ElementKind.FIELD) {
+			return simpleName + SUFFIX;
+		}
+		
+		StringBuilder name = new StringBuilder();
+		boolean upper = true;
+		for (int i = 0; i < simpleName.length(); i++) {
+			char c = simpleName.charAt(i);
+			if (c == '_') {
+				upper = true;
+			}
+			else {
+				name.append(upper ? Character.toUpperCase(c) : Character.toLowerCase(c));
+				upper = false;
+			}
+		}
+		return name.append(SUFFIX).toString();
+	}
+	
+	private void error(Element element, String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+	}
+	
+	protected static String generate(String name, String pattern, ExtendedDateFormat format) {
+		StringBuilder out = new StringBuilder();
+		
+		// a "*/" in the pattern would end the comment; a unicode escape would not help, javac decodes those first
+		out.append("/* Generated by ExtendedDatePatternProcessor from \"").append(escape(pattern).replace("*/", "* /")).append("\"; do not edit. */\n\n");
+		out.append("import java.util.ArrayList;\n");
+		out.append("import java.util.Locale;\n");
+		out.append("import java.util.TimeZone;\n\n");
+		out.append("public final class ").append(name).append(" extends ExtendedDateFormat {\n");
+		out.append("\tpublic static final String PATTERN = \"").append(escape(pattern)).append("\";\n\n");
+		
+		out.append("\tpublic ").append(name).append("() {\n");
+		out.append("\t\tsuper(PATTERN);\n");
+		out.append("\t}\n\n");
+		out.append("\tpublic ").append(name).append("(Locale locale) {\n");
+		out.append("\t\tsuper(PATTERN, locale);\n");
+		out.append("\t}\n\n");
+		out.append("\tpublic ").append(name).append("(Locale locale, TimeZone zone) {\n");
+		out.append("\t\tsuper(PATTERN, locale, zone);\n");
+		out.append("\t}\n\n");
+		
+		out.append("\t@Override\n");
+		out.append("\tprotected void lexAnalyzer() {\n");
+		out.append("\t\tthis.tokens = new ArrayList<FormatToken>();\n");
+		for (ExtendedDateFormat.FormatToken token : format.tokens) {
+			out.append("\t\ttokens.add(new FormatToken(FormatType.").append(token.type.name())
+				.append(", ").append(token.start).append(", ").append(token.end).append("));\n");
+		}
+		out.append("\t}\n\n");
+		
+		out.append("\t@Override\n");
+		out.append("\tprotected void compile() {\n");
+		out.append("\t\tsuper.compile();\n");
+		out.append("\t\tthis.compiled = compiled.withGenerated(new Printer(compiled.printers, zeroDigit));\n");
+		out.append("\t}\n\n");
+		
+		ExtendedDateFormat.FieldPrinter[] printers = format.compiled.printers;
+		
+		out.append("\tstatic final class Printer extends GeneratedPrinter {\n");
+		out.append("\t\tprivate final char zero;\n\n");
+		out.append("\t\tPrinter(FieldPrinter[] delegates, char zero) {\n");
+		out.append("\t\t\tsuper(delegates);\n");
+		out.append("\t\t\tthis.zero = zero;\n");
+		out.append("\t\t}\n\n");
+		
+		out.append("\t\t@Override\n");
+		out.append("\t\tvoid print(int[] fields, StringBuilder buffer) {\n");
+		for (int i = 0; i < printers.length; i++) {
+			ExtendedDateFormat.FieldPrinter printer = printers[i];
+			out.append("\t\t\t");
+			if (printer instanceof ExtendedDateFormat.LiteralPrinter) {
+				String text = ((ExtendedDateFormat.LiteralPrinter) printer).text;
+				if (text.length() == 1) {
+					out.append("buffer.append('").append(escape(text)).append("');\n");
+				}
+				else {
+					out.append("buffer.append(\"").append(escape(text)).append("\");\n");
+				}
+			}
+			else if (printer instanceof ExtendedDateFormat.NumberPrinter) {
+				out.append("appendPadded(buffer, ").append(value((ExtendedDateFormat.NumberPrinter) printer))
+					.append(", ").append(((ExtendedDateFormat.NumberPrinter) printer).width).append(", zero);\n");
+			}
+			else if (printer instanceof ExtendedDateFormat.OrdinalPrinter) {
+				out.append("buffer.append(ordinalSuffix(fields[").append(FIELD_NAMES.get(((ExtendedDateFormat.OrdinalPrinter) printer).field)).append("]));\n");
+			}
+			else {
+				out.append("delegates[").append(i).append("].print(fields, buffer);\n");
+			}
+		}
+		out.append("\t\t}\n\n");
+		
+		out.append("\t\t@Override\n");
+		out.append("\t\tint print(int[] fields, char[] buffer, int pos) {\n");
+		for (int i = 0; i < printers.length; i++) {
+			ExtendedDateFormat.FieldPrinter printer = printers[i];
+			if (printer instanceof ExtendedDateFormat.LiteralPrinter) {
+				String text = ((ExtendedDateFormat.LiteralPrinter) printer).text;
+				if (text.length() <= INLINE_LITERAL_LENGTH) {
+					for (int j = 0; j < text.length(); j++) {
+						out.append("\t\t\tbuffer[pos++] = '").append(escape(text.substring(j, j + 1))).append("';\n");
+					}
+				}
+				else {
+					out.append("\t\t\tpos = writeText(buffer, pos, \"").append(escape(text)).append("\");\n");
+				}
+			}
+			else if (printer instanceof ExtendedDateFormat.NumberPrinter) {
+				out.append("\t\t\tpos = writePadded(buffer, pos, ").append(value((ExtendedDateFormat.NumberPrinter) printer))
+					.append(", ").append(((ExtendedDateFormat.NumberPrinter) printer).width).append(", zero);\n");
+			}
+			else if (printer instanceof ExtendedDateFormat.OrdinalPrinter) {
+				out.append("\t\t\tpos = writeText(buffer, pos, ordinalSuffix(fields[").append(FIELD_NAMES.get(((ExtendedDateFormat.OrdinalPrinter) printer).field)).append("]));\n");
+			}
+			else {
+				out.append("\t\t\tpos = delegates[").append(i).append("].print(fields, buffer, pos);\n");
+			}
+		}
+		out.append("\t\t\treturn pos;\n");
+		out.append("\t\t}\n");
+		out.append("\t}\n");
+		out.append("}\n");
+		
+		return out.toString();
+	}
+	
+	private static String value(ExtendedDateFormat.NumberPrinter printer) {
+		String value = "fields[" + FIELD_NAMES.get(printer.field) + "]";
+		if (printer instanceof ExtendedDateFormat.ReducedNumberPrinter) {
+			value += " % " + ((ExtendedDateFormat.ReducedNumberPrinter) printer).modulus;
+		}
+		return value;
+	}
+	
+	/**
+	 * Java literal escaping; also used for char literals, hence the 
+	 * escaped single quote. Control characters are written as octal 
+	 * escapes, since a \\u000a would end the literal.
+	 */
+	private static String escape(String text) {
+		StringBuilder escaped = new StringBuilder();
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+				case '\\':
+					escaped.append("\\\\");
+					break;
+				case '"':
+					escaped.append("\\\"");
+					break;
+				case '\'':
+					escaped.append("\\'");
+					break;
+				default:
+					if (c < 0x20) {
+						escaped.append(String.format("\\%03o", (int) c));
+					}
+					else if (c > 0x7e) {
+						escaped.append(String.format("\\u%04x", (int) c));
+					}
+					else {
+						escaped.append(c);
+					}
+			}
+		}
+		return escaped.toString();
+	}
+	
+	/**
+	 * Index to name of the FIELD_* constants, so the generated code reads 
+	 * fields[FIELD_DAY_OF_MONTH] rather than fields[7].
+	 */
+	private static Map<Integer, String> fieldNames() {
+		Map<Integer, String> names = new HashMap<Integer, String>();
+		for (Field field : ExtendedDateFormat.class.getDeclaredFields()) {
+			int modifiers = field.getModifiers();
+			if (field.getName().startsWith("FIELD_") && Modifier.isStatic(modifiers) && field.getType() == int.class
+					&& !"FIELD_COUNT".equals(field.getName())) {
+				try {
+					field.setAccessible(true);
+					names.put(field.getInt(null), field.getName());
+				}
+				catch (IllegalAccessException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		}
+		return names;
+	}
+}
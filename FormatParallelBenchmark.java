@@ -0,0 +1,92 @@
+/* https://github.com/faadias/java-stuff/blob/master/FormatParallelBenchmark.java */
+
+/* FormatParallelBenchmark.java -- Scaling benchmark for ExtendedDateFormat.formatParallel()
+ * Copyright (C) 2014  Felipe Augusto Araujo Dias (@faadias1)
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 
+ * @author Felipe Augusto Araujo Dias (@faadias1)
+ * @version 1.0.0
+ * 
+ * Formats one column of timestamps with formatBatch() and then with
+ * formatParallel() on pools of 1, 2, 4... threads up to the number of
+ * cores, printing the best time of each and the speedup over one thread.
+ * Every parallel result is checked against the sequential one.
+ * 
+ * Usage: java FormatParallelBenchmark [values [pattern [rounds]]]
+ * (defaults: 4000000, "yyyy-MM-dd'T'HH:mm:ss.SSSXXX", 10)
+ * 
+ */
+public class FormatParallelBenchmark {
+	
+	public static void main(String[] args) {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 4000000;
+		String pattern = args.length > 1 ? args[1] : "yyyy-MM-dd'T'HH:mm:ss.SSSXXX";
+		int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+		int cores = Runtime.getRuntime().availableProcessors();
+		
+		// an export-like column: ascending, a few milliseconds apart
+		long[] epochs = new long[size];
+		Random random = new Random(42);
+		long epochMillis = 1400000000000L;
+		for (int i = 0; i < size; i++) {
+			epochMillis += random.nextInt(50);
+			epochs[i] = epochMillis;
+		}
+		
+		ExtendedDateFormat format = ExtendedDateFormat.getInstance(pattern);
+		ExtendedDateFormat.Batch expected = format.formatBatch(epochs, 0, size);
+		System.out.println(size + " values, \"" + pattern + "\", " + cores + " cores");
+		
+		long sequential = Long.MAX_VALUE;
+		for (int round = 0; round < rounds; round++) {
+			long start = System.nanoTime();
+			format.formatBatch(epochs, 0, size);
+			sequential = Math.min(sequential, System.nanoTime() - start);
+		}
+		System.out.printf("formatBatch            %8.1f ms%n", sequential / 1e6);
+		
+		long single = 0;
+		for (int threads = 1; ; threads = Math.min(2 * threads, cores)) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			long best = Long.MAX_VALUE;
+			for (int round = 0; round < rounds; round++) {
+				long start = System.nanoTime();
+				ExtendedDateFormat.Batch batch = format.formatParallel(epochs, pool);
+				best = Math.min(best, System.nanoTime() - start);
+				if (round == 0 && (!Arrays.equals(batch.getText(), expected.getText()) || !Arrays.equals(batch.getOffsets(), expected.getOffsets()))) {
+					throw new IllegalStateException("formatParallel() differs from formatBatch() with " + threads + " threads");
+				}
+			}
+			pool.shutdown();
+			
+			if (threads == 1) {
+				single = best;
+			}
+			System.out.printf("formatParallel %3d thr %8.1f ms  speedup %5.2fx  efficiency %3.0f%%%n",
+					threads, best / 1e6, (double) single / best, 100.0 * single / best / threads);
+			if (threads == cores) {
+				break;
+			}
+		}
+	}
+}
@@ -0,0 +1,210 @@
+/* https://github.com/faadias/java-stuff/blob/master/IncrementalFormatter.java */
+
+/* IncrementalFormatter.java -- Formats ascending timestamps by rewriting only what changed
+ * Copyright (C) 2014  Felipe Augusto Araujo Dias (@faadias1)
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+
+import java.util.Date;
+
+/**
+ * 
+ * @author Felipe Augusto Araujo Dias (@faadias1)
+ * @version 1.0.0
+ * 
+ * Formats a stream of timestamps, such as the ones of a time series export
+ * or a log replay, by editing the previous output instead of rendering the
+ * pattern from scratch. The last text is kept together with its field
+ * values and where each printer's output starts; for a new timestamp the
+ * fields are worked out (only the time of day while still in the same
+ * local day), compared with the previous ones, and only the printers
+ * reading a changed field are printed again. Going from one millisecond
+ * to the next, that is just the 'SSS' of "yyyy-MM-dd HH:mm:ss.SSS"; the
+ * seconds, minutes and so on up are only reprinted when they actually
+ * roll over. A printer whose new text has another length (a month name,
+ * an unpadded day of month) moves the rest of the text along.
+ * 
+ * Timestamps may come in any order, the output is always that of the
+ * format; ascending, closely spaced ones are the cheap case. An instance
+ * keeps mutable state and is not thread-safe: use one per thread or
+ * stream.
+ * 
+ */
+public class IncrementalFormatter {
+	
+	protected final ExtendedDateFormat format;
+	protected final ExtendedDateFormat.CompiledPattern compiled;
+	protected final ExtendedDateFormat.FieldPrinter[] printers;
+	protected final int[] fieldMasks;
+	protected final int[] starts;
+	protected final char[] text;
+	protected final char[] scratch;
+	private int[] fields = null;
+	private int[] spare = new int[ExtendedDateFormat.FIELD_COUNT];
+	private ExtendedDateFormat.BoundarySnapshot day = null;
+	private long epochMillis = 0;
+	private int millisOfDay = 0;
+	
+	public IncrementalFormatter(ExtendedDateFormat format) {
+		this.format = format;
+		this.compiled = format.compiled;
+		this.printers = compiled.printers;
+		this.fieldMasks = new int[printers.length];
+		this.starts = new int[printers.length + 1];
+		this.text = new char[compiled.maxLength];
+		this.scratch = new char[compiled.maxLength];
+		
+		for (int i = 0; i < printers.length; i++) {
+			fieldMasks[i] = printers[i].fieldMask();
+		}
+	}
+	
+	public ExtendedDateFormat getFormat() {
+		return format;
+	}
+	
+	public String format(Date date) {
+		return format(date.getTime());
+	}
+	
+	public String format(long epochMillis) {
+		moveTo(epochMillis);
+		return new String(text, 0, starts[printers.length]);
+	}
+	
+	/**
+	 * @return the new length of the builder
+	 */
+	public int formatTo(long epochMillis, StringBuilder buffer) {
+		moveTo(epochMillis);
+		return buffer.append(text, 0, starts[printers.length]).length();
+	}
+	
+	/**
+	 * As ExtendedDateFormat.formatTo(long, char[], int), the array must be
+	 * large enough.
+	 * 
+	 * @return the offset right after the last character written
+	 */
+	public int formatTo(long epochMillis, char[] buffer, int offset) {
+		moveTo(epochMillis);
+		int length = starts[printers.length];
+		System.arraycopy(text, 0, buffer, offset, length);
+		return offset + length;
+	}
+	
+	/**
+	 * Brings text up to date with the instant. Should that fail half way, 
+	 * the state is dropped and the next call starts over from scratch.
+	 */
+	protected void moveTo(long epochMillis) {
+		boolean done = false;
+		try {
+			update(epochMillis);
+			done = true;
+		}
+		finally {
+			if (!done) {
+				fields = null;
+				day = null;
+			}
+		}
+	}
+	
+	protected void update(long epochMillis) {
+		if (fields == null) {
+			fields = format.loadFields(epochMillis, compiled);
+			day = format.daySnapshot(epochMillis, fields, compiled);
+			this.epochMillis = epochMillis;
+			this.millisOfDay = millisOfDay(epochMillis, fields);
+			
+			int pos = 0;
+			for (int i = 0; i < printers.length; i++) {
+				starts[i] = pos;
+				pos = printers[i].print(fields, text, pos);
+			}
+			starts[printers.length] = pos;
+			return;
+		}
+		
+		if (epochMillis == this.epochMillis) {
+			return;
+		}
+		this.epochMillis = epochMillis;
+		
+		int changed = 0;
+		boolean sameDay = day != null && epochMillis >= day.validFrom && epochMillis < day.validUntil;
+		int millisOfDay = sameDay ? millisOfDay(epochMillis, fields) : 0;
+		
+		if (sameDay && millisOfDay / 1000 == this.millisOfDay / 1000) {
+			// same second: only the milliseconds move
+			fields[ExtendedDateFormat.FIELD_MILLISECOND] = millisOfDay % 1000;
+			changed = 1 << ExtendedDateFormat.FIELD_MILLISECOND;
+		}
+		else {
+			int[] next;
+			if (sameDay) {
+				next = spare;
+				System.arraycopy(fields, 0, next, 0, ExtendedDateFormat.FIELD_COUNT);
+				ExtendedDateFormat.computeTimeFields(millisOfDay, next);
+			}
+			else {
+				next = format.loadFields(epochMillis, compiled);
+				day = format.daySnapshot(epochMillis, next, compiled);
+				millisOfDay = millisOfDay(epochMillis, next);
+			}
+			
+			for (int field = 0; field < ExtendedDateFormat.FIELD_COUNT; field++) {
+				if (next[field] != fields[field]) {
+					changed |= 1 << field;
+				}
+			}
+			spare = fields;
+			fields = next;
+		}
+		this.millisOfDay = millisOfDay;
+		
+		for (int i = 0; i < printers.length; i++) {
+			if ((fieldMasks[i] & changed) != 0) {
+				reprint(i);
+			}
+		}
+	}
+	
+	protected static int millisOfDay(long epochMillis, int[] fields) {
+		return (int) Math.floorMod(epochMillis + fields[ExtendedDateFormat.FIELD_ZONE_OFFSET], ExtendedDateFormat.MILLIS_PER_DAY);
+	}
+	
+	/**
+	 * Prints printer i again over its previous text, shifting whatever
+	 * follows when the length changed.
+	 */
+	protected void reprint(int i) {
+		int start = starts[i];
+		int end = starts[i + 1];
+		int length = printers[i].print(fields, scratch, 0);
+		int shift = length - (end - start);
+		
+		if (shift != 0) {
+			int last = printers.length;
+			System.arraycopy(text, end, text, end + shift, starts[last] - end);
+			for (int j = i + 1; j <= last; j++) {
+				starts[j] += shift;
+			}
+		}
+		System.arraycopy(scratch, 0, text, start, length);
+	}
+}
@@ -0,0 +1,292 @@
+/* https://github.com/faadias/java-stuff/blob/master/MultiPatternParser.java */
+
+/* MultiPatternParser.java -- Parses text against several ExtendedDateFormat patterns at once
+ * Copyright (C) 2014  Felipe Augusto Araujo Dias (@faadias1)
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 
+ * @author Felipe Augusto Araujo Dias (@faadias1)
+ * @version 1.0.0
+ * 
+ * Detects which of several ExtendedDateFormat patterns a timestamp was
+ * written with, and parses it, in one go. The parser chains of all the
+ * patterns are merged into a prefix tree, so a prefix shared by several
+ * patterns (say "yyyy-MM-dd" in "yyyy-MM-dd HH:mm:ss" and
+ * "yyyy-MM-dd'T'HH:mm:ssXXX") is read once, and the text is only read
+ * again from the point where the patterns part ways.
+ * 
+ * The text must match a pattern completely. When several patterns do
+ * (e.g. "dd/MM/yyyy" and "MM/dd/yyyy" on "01/02/2014"), the one given
+ * first wins. Like ExtendedDateFormat, an instance is thread-safe; the
+ * per-pattern counters of getStatistics() show which patterns are worth
+ * moving up front, or dropping.
+ * 
+ */
+public class MultiPatternParser {
+	
+	protected final ExtendedDateFormat[] formats;
+	protected final Node root = new Node(null);
+	private final LongAdder[] matchCounts;
+	private final LongAdder missCount = new LongAdder();
+	
+	public MultiPatternParser(ExtendedDateFormat... formats) {
+		if (formats.length == 0) {
+			throw new IllegalArgumentException("No pattern given");
+		}
+		
+		this.formats = formats.clone();
+		this.matchCounts = new LongAdder[formats.length];
+		
+		for (int i = 0; i < formats.length; i++) {
+			Node node = root;
+			node.minIndex = Math.min(node.minIndex, i);
+			for (ExtendedDateFormat.FieldParser parser : formats[i].parsePlan().parsers) {
+				node = node.child(parser);
+				node.minIndex = Math.min(node.minIndex, i);
+			}
+			node.terminal = Math.min(node.terminal, i);
+			matchCounts[i] = new LongAdder();
+		}
+		
+		root.seal();
+	}
+	
+	public MultiPatternParser(List<ExtendedDateFormat> formats) {
+		this(formats.toArray(new ExtendedDateFormat[formats.size()]));
+	}
+	
+	/**
+	 * Builds the formats with getInstance(pattern).
+	 */
+	public static MultiPatternParser forPatterns(String... patterns) {
+		ExtendedDateFormat[] formats = new ExtendedDateFormat[patterns.length];
+		for (int i = 0; i < patterns.length; i++) {
+			formats[i] = ExtendedDateFormat.getInstance(patterns[i]);
+		}
+		return new MultiPatternParser(formats);
+	}
+	
+	/**
+	 * Parses text[start, end) into match, which may be reused between
+	 * calls so that a successful parse allocates nothing but field arrays.
+	 * 
+	 * @return whether some pattern matched; match is left untouched if not
+	 */
+	public boolean parse(CharSequence text, int start, int end, Match match) {
+		int[] fields = new int[ExtendedDateFormat.FIELD_COUNT + 1];
+		int index = search(root, text, start, end, fields, formats.length, match);
+		
+		if (index == formats.length) {
+			missCount.increment();
+			return false;
+		}
+		
+		matchCounts[index].increment();
+		ExtendedDateFormat format = formats[index];
+		match.index = index;
+		match.format = format;
+		match.epochMillis = format.resolveEpochMillis(format.parsePlan(), match.fields);
+		return true;
+	}
+	
+	/**
+	 * @return the match, or null if no pattern matched the whole text
+	 */
+	public Match parse(CharSequence text) {
+		Match match = new Match();
+		return parse(text, 0, text.length(), match) ? match : null;
+	}
+	
+	/**
+	 * Depth-first walk below node, children in order of the first pattern
+	 * reaching them; subtrees that can only hold patterns listed after the
+	 * best match so far are skipped. The fields array is only copied where
+	 * the tree branches.
+	 * 
+	 * @return the index of the best full match, or best if none is better
+	 */
+	private int search(Node node, CharSequence text, int pos, int end, int[] fields, int best, Match match) {
+		if (pos == end && node.terminal < best) {
+			best = node.terminal;
+			System.arraycopy(fields, 0, match.fields, 0, fields.length);
+		}
+		
+		Node[] children = node.children;
+		for (int i = 0; i < children.length; i++) {
+			Node child = children[i];
+			if (child.minIndex >= best) {
+				break;
+			}
+			int[] childFields = children.length == 1 ? fields : fields.clone();
+			int next = child.parser.parse(text, pos, end, childFields);
+			if (next >= 0) {
+				best = search(child, text, next, end, childFields, best, match);
+			}
+		}
+		
+		return best;
+	}
+	
+	public List<ExtendedDateFormat> getFormats() {
+		return Collections.unmodifiableList(Arrays.asList(formats));
+	}
+	
+	public Statistics getStatistics() {
+		long[] matches = new long[formats.length];
+		for (int i = 0; i < matches.length; i++) {
+			matches[i] = matchCounts[i].sum();
+		}
+		return new Statistics(formats, matches, missCount.sum());
+	}
+	
+	/**
+	 * Node of the merged tree: the parser leading to it, the first pattern
+	 * ending at it (terminal) and the first pattern passing through it
+	 * (minIndex), both Integer.MAX_VALUE when there is none.
+	 */
+	protected static final class Node {
+		final ExtendedDateFormat.FieldParser parser;
+		Node[] children = new Node[0];
+		int terminal = Integer.MAX_VALUE;
+		int minIndex = Integer.MAX_VALUE;
+		
+		Node(ExtendedDateFormat.FieldParser parser) {
+			this.parser = parser;
+		}
+		
+		Node child(ExtendedDateFormat.FieldParser parser) {
+			for (Node child : children) {
+				if (child.parser.equals(parser)) {
+					return child;
+				}
+			}
+			Node child = new Node(parser);
+			children = Arrays.copyOf(children, children.length + 1);
+			children[children.length - 1] = child;
+			return child;
+		}
+		
+		void seal() {
+			Arrays.sort(children, new Comparator<Node>() {
+				@Override
+				public int compare(Node a, Node b) {
+					return Integer.compare(a.minIndex, b.minIndex);
+				}
+			});
+			for (Node child : children) {
+				child.seal();
+			}
+		}
+	}
+	
+	/**
+	 * Result of parse(): which pattern matched and the instant it gave.
+	 */
+	public static final class Match {
+		final int[] fields = new int[ExtendedDateFormat.FIELD_COUNT + 1];
+		int index = -1;
+		ExtendedDateFormat format = null;
+		long epochMillis = ExtendedDateFormat.PARSE_ERROR;
+		
+		public int getIndex() {
+			return index;
+		}
+		
+		public ExtendedDateFormat getFormat() {
+			return format;
+		}
+		
+		public long getEpochMillis() {
+			return epochMillis;
+		}
+		
+		@Override
+		public String toString() {
+			return "{index : " + index + ", pattern : \"" + (format == null ? "" : format.pattern) + "\", epochMillis : " + epochMillis + "}";
+		}
+	}
+	
+	/**
+	 * Point-in-time match counters, per pattern in the order given.
+	 */
+	public static final class Statistics {
+		private final ExtendedDateFormat[] formats;
+		private final long[] matchCounts;
+		private final long missCount;
+		
+		Statistics(ExtendedDateFormat[] formats, long[] matchCounts, long missCount) {
+			this.formats = formats;
+			this.matchCounts = matchCounts;
+			this.missCount = missCount;
+		}
+		
+		public int size() {
+			return formats.length;
+		}
+		
+		public String getPattern(int index) {
+			return formats[index].pattern;
+		}
+		
+		public long getMatchCount(int index) {
+			return matchCounts[index];
+		}
+		
+		public long getMissCount() {
+			return missCount;
+		}
+		
+		/**
+		 * Pattern indexes from the most to the least matched, e.g. to
+		 * rebuild the parser with the busiest patterns first.
+		 */
+		public int[] getIndexesByMatchCount() {
+			List<Integer> indexes = new ArrayList<Integer>();
+			for (int i = 0; i < formats.length; i++) {
+				indexes.add(i);
+			}
+			Collections.sort(indexes, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer a, Integer b) {
+					return Long.compare(matchCounts[b], matchCounts[a]);
+				}
+			});
+			int[] sorted = new int[indexes.size()];
+			for (int i = 0; i < sorted.length; i++) {
+				sorted[i] = indexes.get(i);
+			}
+			return sorted;
+		}
+		
+		@Override
+		public String toString() {
+			StringBuilder text = new StringBuilder("{patterns : [");
+			for (int i = 0; i < formats.length; i++) {
+				text.append(i == 0 ? "" : ", ").append("{pattern : \"").append(formats[i].pattern).append("\", matches : ").append(matchCounts[i]).append("}");
+			}
+			return text.append("], misses : ").append(missCount).append("}").toString();
+		}
+	}
+}
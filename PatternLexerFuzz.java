@@ -0,0 +1,315 @@
+/* https://github.com/faadias/java-stuff/blob/master/PatternLexerFuzz.java */
+
+/* PatternLexerFuzz.java -- Fuzzer and benchmark for the ExtendedDateFormat pattern lexer
+ * Copyright (C) 2014  Felipe Augusto Araujo Dias (@faadias1)
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 
+ * @author Felipe Augusto Araujo Dias (@faadias1)
+ * @version 1.0.0
+ * 
+ * Lexes random patterns of letters, quotes and separators with
+ * ExtendedDateFormat and with the previous, character by character lexer
+ * kept below, and compares what they print: the runs of pattern letters
+ * and the literal text between them. When the previous lexer rejects a
+ * pattern, ExtendedDateFormat must throw InvalidPatternException with
+ * getErrorOffset() at the offending quote or field. Patterns starting
+ * with a doubled quote are counted apart, as the previous lexer
+ * mishandled them. Then times both lexers on long quoted patterns.
+ * 
+ * Usage: java PatternLexerFuzz [patterns [seed]]
+ * (defaults: 300000, 42); exits with status 1 on any mismatch.
+ * 
+ */
+public class PatternLexerFuzz {
+	
+	private static final String ALPHABET = "yyMMdddHHmmssSSSEEEaaozZXX-: ,.''''''b/";
+	private static final char SINGLE_QUOTE = '\'';
+	
+	public static void main(String[] args) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 300000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 42;
+		Random random = new Random(seed);
+		int same = 0, rejected = 0, leadingQuotes = 0, failures = 0;
+		
+		for (int n = 0; n < count; n++) {
+			StringBuilder builder = new StringBuilder();
+			int length = random.nextInt(14);
+			for (int i = 0; i < length; i++) {
+				builder.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+			}
+			String pattern = builder.toString();
+			
+			if (pattern.startsWith("''")) {
+				leadingQuotes++;
+				continue;
+			}
+			
+			String problem = compare(pattern);
+			if (problem == null) {
+				same++;
+			}
+			else if (problem.isEmpty()) {
+				rejected++;
+			}
+			else {
+				if (failures++ < 20) {
+					System.out.println("FAIL \"" + pattern + "\": " + problem);
+				}
+			}
+		}
+		
+		System.out.println(count + " patterns: " + same + " same tokens, " + rejected + " rejected at the same offset, "
+				+ leadingQuotes + " skipped (leading doubled quote), " + failures + " mismatches");
+		
+		benchmark();
+		
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+	
+	/**
+	 * @return null if both lexers print the same, "" if both reject the
+	 * pattern at the same index, or else what differs
+	 */
+	static String compare(String pattern) {
+		int expectedOffset = -1;
+		String expectedMessage = null;
+		List<Token> previous = previousLexer(pattern);
+		
+		if (previous == null) {
+			expectedMessage = "Unterminated quote";
+			expectedOffset = lastOpeningQuote;
+		}
+		else {
+			for (Token token : previous) {
+				char c = token.content.charAt(0);
+				if (token.type == 'F' && (c == 'b' || (c == 'X' && token.content.length() > 3))) {
+					expectedMessage = c == 'b' ? "Illegal pattern character b" : "Invalid ISO 8601 format";
+					expectedOffset = token.start;
+					break;
+				}
+			}
+		}
+		
+		ExtendedDateFormat format;
+		try {
+			format = new ExtendedDateFormat(pattern);
+		}
+		catch (ExtendedDateFormat.InvalidPatternException e) {
+			if (expectedMessage == null) {
+				return "unexpected " + e.getMessage();
+			}
+			if (!e.getMessage().startsWith(expectedMessage) || e.getErrorOffset() != expectedOffset) {
+				return "expected " + expectedMessage + " at index " + expectedOffset + ", got " + e.getMessage();
+			}
+			return "";
+		}
+		
+		if (expectedMessage != null) {
+			return "expected " + expectedMessage + " at index " + expectedOffset + ", got no error";
+		}
+		
+		List<String> expected = new ArrayList<String>();
+		for (Token token : previous) {
+			if (token.type == 'F') {
+				add(expected, true, token.content);
+			}
+			else {
+				add(expected, false, token.type == 'T' ? token.content.replaceAll("^'|'$", "") : token.content);
+			}
+		}
+		
+		List<String> actual = new ArrayList<String>();
+		for (ExtendedDateFormat.FormatToken token : format.tokens) {
+			if (token.length() == 0) {
+				return "empty token at index " + token.start;
+			}
+			if (token.type == ExtendedDateFormat.FormatType.FORMATTER) {
+				add(actual, true, token.content());
+			}
+			else {
+				add(actual, false, token.literal());
+			}
+		}
+		
+		return expected.equals(actual) ? null : "expected " + expected + ", got " + actual;
+	}
+	
+	/**
+	 * Adds a field run, or literal text merged with the literal before it,
+	 * since where literal tokens split does not change the output.
+	 */
+	static void add(List<String> items, boolean field, String text) {
+		if (field) {
+			items.add("field " + text);
+		}
+		else if (text.length() > 0) {
+			int last = items.size() - 1;
+			if (last >= 0 && items.get(last).startsWith("text ")) {
+				items.set(last, items.get(last) + text);
+			}
+			else {
+				items.add("text " + text);
+			}
+		}
+	}
+	
+	/**
+	 * Lexing only, pattern and token list of an already built formatter
+	 * being replaced in place.
+	 */
+	static void benchmark() {
+		ExtendedDateFormat format = new ExtendedDateFormat("yyyy");
+		
+		for (int size : new int[] {1000, 10000, 100000}) {
+			StringBuilder builder = new StringBuilder("'");
+			for (int i = 0; i < size; i++) {
+				builder.append(i % 7 == 0 ? "''" : "x");
+			}
+			String pattern = builder.append("' yyyy-MM-dd").toString();
+			format.pattern = pattern;
+			
+			long current = Long.MAX_VALUE, previous = Long.MAX_VALUE;
+			for (int round = 0; round < 5; round++) {
+				long start = System.nanoTime();
+				format.lexAnalyzer();
+				long middle = System.nanoTime();
+				previousLexer(pattern);
+				long end = System.nanoTime();
+				current = Math.min(current, middle - start);
+				previous = Math.min(previous, end - middle);
+			}
+			System.out.printf("quoted pattern of %6d chars: lexAnalyzer %8.3f ms, previous lexer %8.3f ms%n",
+					pattern.length(), current / 1e6, previous / 1e6);
+		}
+	}
+	
+	
+	static class Token {
+		String content = "";
+		char type = 0;
+		int start = 0;
+	}
+	
+	private static int lastOpeningQuote = -1;
+	
+	/**
+	 * The lexer as it was before ExtendedDateFormat recorded token ranges,
+	 * with FORMATTER, TEXT and SEPARATOR as 'F', 'T' and 'S', and the
+	 * start index of each token added.
+	 * 
+	 * @return the tokens, or null for an odd number of quotes, with the
+	 * last quote opened left in lastOpeningQuote
+	 */
+	static List<Token> previousLexer(String pattern) {
+		List<Token> tokens = new ArrayList<Token>();
+		
+		boolean quoteOpened = false;
+		Character lastFormatterChar = null;
+		Token token = new Token();
+		
+		for (int i = 0; i < pattern.length(); i++) {
+			char c = pattern.charAt(i);
+			
+			if (c == SINGLE_QUOTE) {
+				if (i+1 < pattern.length() && pattern.charAt(i+1) == SINGLE_QUOTE) {
+					
+					if (token.type == 'F') {
+						tokens.add(token);
+						token = new Token();
+						token.type = 'S';
+						token.start = i;
+					}
+					
+					i++;
+				}
+				else {
+					quoteOpened = !quoteOpened;
+					if (quoteOpened) {
+						tokens.add(token);
+						token = new Token();
+						token.type = 'T';
+						token.start = i;
+						lastOpeningQuote = i;
+					}
+				}
+				
+				token.content += c;
+			}
+			else {
+				if (quoteOpened) {
+					token.content += c;
+				}
+				else {
+					if ( (c >= 65 && c <= 90) || (c >= 97 && c <= 122)) { //c in range [A-Z] U [a-z]
+						if (token.type == 0) {
+							token.type = 'F';
+							token.start = i;
+						}
+						
+						if (token.type != 'F' || ( !"".equals(token.content) && c != lastFormatterChar )) {
+							tokens.add(token);
+							token = new Token();
+							token.type = 'F';
+							token.start = i;
+						}
+						
+						token.content += c;
+						lastFormatterChar = c;
+					}
+					else {
+						if (token.type == 0) {
+							token.type = 'S';
+							token.start = i;
+						}
+						
+						if (token.type != 'S') {
+							tokens.add(token);
+							token = new Token();
+							token.type = 'S';
+							token.start = i;
+						}
+						
+						token.content += c;
+						lastFormatterChar = null;
+					}
+				}
+			}
+		}
+		
+		if (token.type != 0) {
+			tokens.add(token);
+		}
+		
+		// the previous format() skipped empty and untyped tokens
+		List<Token> printed = new ArrayList<Token>();
+		for (Token t : tokens) {
+			if (t.type != 0 && t.content.length() > 0) {
+				printed.add(t);
+			}
+		}
+		
+		return quoteOpened ? null : printed;
+	}
+}
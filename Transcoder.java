@@ -0,0 +1,172 @@
+/* https://github.com/faadias/java-stuff/blob/master/Transcoder.java */
+
+/* Transcoder.java -- Rewrites date text from one ExtendedDateFormat pattern to another
+ * Copyright (C) 2014  Felipe Augusto Araujo Dias (@faadias1)
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+
+/**
+ * 
+ * @author Felipe Augusto Araujo Dias (@faadias1)
+ * @version 1.0.0
+ * 
+ * Converts text written with a source pattern to a target pattern, e.g.
+ * "dd/MM/yyyy HH:mm:ss" log timestamps to "yyyy-MM-dd'T'HH:mm:ssXXX",
+ * with no Date, and usually no calendar, in between. The source parser
+ * chain fills a field array that is resolved to local time; when both
+ * patterns share the same zone rules and the source text carries no zone
+ * of its own, that local time is decomposed straight into the target's
+ * fields, with the offset taken from the last WallInterval seen instead
+ * of going to the epoch and back. Anything else (zone in the source
+ * text, a different target zone, local times near a transition) goes
+ * through parseToEpochMillis()-style resolution and formatTo(). Either
+ * way the output is the same as formatting what the source parsed.
+ * 
+ * Results are written into the caller's buffers; a char[] input can be
+ * passed as java.nio.CharBuffer.wrap(array). Like ExtendedDateFormat, an
+ * instance is thread-safe.
+ * 
+ */
+public class Transcoder {
+	
+	protected final ExtendedDateFormat source;
+	protected final ExtendedDateFormat target;
+	protected final boolean direct;
+	private volatile ExtendedDateFormat.WallInterval wallInterval = null;
+	
+	public Transcoder(ExtendedDateFormat source, ExtendedDateFormat target) {
+		this.source = source;
+		this.target = target;
+		this.direct = isDirect(source, target);
+	}
+	
+	/**
+	 * Builds both formats with getInstance(pattern).
+	 */
+	public static Transcoder forPatterns(String sourcePattern, String targetPattern) {
+		return new Transcoder(ExtendedDateFormat.getInstance(sourcePattern), ExtendedDateFormat.getInstance(targetPattern));
+	}
+	
+	/**
+	 * Local time can be carried over unchanged when it means the same in
+	 * both zones and the source text cannot move it to another zone.
+	 */
+	protected static boolean isDirect(ExtendedDateFormat source, ExtendedDateFormat target) {
+		ExtendedDateFormat.ParsePlan plan = source.parsePlan();
+		if (!plan.arithmetic || !source.getTimeZone().hasSameRules(target.getTimeZone())) {
+			return false;
+		}
+		for (ExtendedDateFormat.FieldParser parser : plan.parsers) {
+			if (parser.field == ExtendedDateFormat.FIELD_ZONE_OFFSET || parser.field == ExtendedDateFormat.FIELD_DAYLIGHT) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Whether local times are carried over without the epoch round-trip.
+	 */
+	public boolean isDirect() {
+		return direct;
+	}
+	
+	/**
+	 * Rewrites text[start, end), which must hold exactly one value of the
+	 * source pattern, into buffer at offset. As with formatTo(), the array
+	 * must be large enough.
+	 * 
+	 * @return the offset right after the last character written or, if the
+	 * text does not match, ~errorIndex; nothing is written then
+	 */
+	public int transcode(CharSequence text, int start, int end, char[] buffer, int offset) {
+		ExtendedDateFormat.ParsePlan plan = source.parsePlan();
+		int[] fields = new int[ExtendedDateFormat.FIELD_COUNT + 1];
+		int pos = ExtendedDateFormat.parseFields(plan, text, start, end, fields);
+		
+		if (pos != end) {
+			return pos < 0 ? pos : ~pos;
+		}
+		
+		ExtendedDateFormat.CompiledPattern compiled = target.compiled;
+		int[] targetFields = direct ? localFields(plan, fields, compiled) : null;
+		if (targetFields != null) {
+			target.countInvocation();
+			return compiled.print(targetFields, buffer, offset);
+		}
+		return target.formatTo(source.resolveEpochMillis(plan, fields), buffer, offset);
+	}
+	
+	/**
+	 * StringBuilder flavour of transcode().
+	 * 
+	 * @return the new length of the builder or, if the text does not match,
+	 * ~errorIndex; nothing is appended then
+	 */
+	public int transcode(CharSequence text, int start, int end, StringBuilder buffer) {
+		ExtendedDateFormat.ParsePlan plan = source.parsePlan();
+		int[] fields = new int[ExtendedDateFormat.FIELD_COUNT + 1];
+		int pos = ExtendedDateFormat.parseFields(plan, text, start, end, fields);
+		
+		if (pos != end) {
+			return pos < 0 ? pos : ~pos;
+		}
+		
+		ExtendedDateFormat.CompiledPattern compiled = target.compiled;
+		int[] targetFields = direct ? localFields(plan, fields, compiled) : null;
+		if (targetFields != null) {
+			target.countInvocation();
+			compiled.print(targetFields, buffer);
+			return buffer.length();
+		}
+		return target.formatTo(source.resolveEpochMillis(plan, fields), buffer);
+	}
+	
+	/**
+	 * @return the rewritten text, or null if the text does not match
+	 */
+	public String transcode(CharSequence text) {
+		StringBuilder buffer = new StringBuilder();
+		return transcode(text, 0, text.length(), buffer) < 0 ? null : buffer.toString();
+	}
+	
+	/**
+	 * The target fields for the parsed local time, or null when it needs
+	 * the full resolution: calendar-only values, a local time outside any
+	 * WallInterval, or a two-digit year that may belong to the next
+	 * century.
+	 */
+	protected int[] localFields(ExtendedDateFormat.ParsePlan plan, int[] fields, ExtendedDateFormat.CompiledPattern compiled) {
+		long local = source.computeLocalMillis(fields);
+		if (local == ExtendedDateFormat.PARSE_ERROR) {
+			return null;
+		}
+		
+		ExtendedDateFormat.WallInterval interval = this.wallInterval;
+		if (interval == null || local < interval.localFrom || local >= interval.localUntil) {
+			interval = source.wallInterval(local);
+			if (interval == null) {
+				return null;
+			}
+			this.wallInterval = interval;
+		}
+		
+		if ((fields[ExtendedDateFormat.PARSED_FIELDS] & ExtendedDateFormat.PARSED_AMBIGUOUS_YEAR) != 0 && local - interval.offset < plan.centuryStartMillis) {
+			return null;
+		}
+		return target.loadFields(local, interval.offset, interval.daylight, compiled);
+	}
+}